@@ -0,0 +1,77 @@
+package org.example.testassignmentcs.benchmark;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import org.example.testassignmentcs.model.User;
+import org.example.testassignmentcs.repository.UserJdbcRepository;
+import org.example.testassignmentcs.service.BirthDateIndex;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// single-user writes against a loaded index; outside a transaction they apply at once, so the
+// time is the index's own: the blocks and table copied, and the id lookup
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BirthDateIndexBenchmark {
+    private static final LocalDate FIRST_BIRTH_DATE = LocalDate.of(1950, 1, 1);
+    private static final int BIRTH_DAYS = 20_000;
+
+    @Param({"100000", "1000000"})
+    private int users;
+
+    private BirthDateIndex birthDateIndex;
+    private long next;
+
+    @Setup
+    public void setUp() {
+        UserJdbcRepository userJdbcRepository = Mockito.mock(UserJdbcRepository.class);
+        doAnswer(invocationOnMock -> {
+            BiConsumer<Long, LocalDate> consumer = invocationOnMock.getArgument(0);
+            for (long id = 0; id < users; id++) {
+                consumer.accept(id, birthDate(id));
+            }
+            return null;
+        }).when(userJdbcRepository).forEachBirthDate(any());
+        birthDateIndex = new BirthDateIndex(userJdbcRepository, true);
+        birthDateIndex.load();
+    }
+
+    @Benchmark
+    public BirthDateIndex put() {
+        long id = next % users;
+        // every pass over the users moves each of them to another day
+        birthDateIndex.put(id, birthDate(id + ++next / users + 1));
+        return birthDateIndex;
+    }
+
+    @Benchmark
+    public BirthDateIndex removeAndAdd() {
+        long id = next++ % users;
+        birthDateIndex.remove(List.of(id));
+        birthDateIndex.add(List.of(new User().setId(id).setBirthDate(birthDate(id))));
+        return birthDateIndex;
+    }
+
+    private static LocalDate birthDate(long seed) {
+        return FIRST_BIRTH_DATE.plusDays(Math.floorMod(seed * 7919, BIRTH_DAYS));
+    }
+}
@@ -0,0 +1,86 @@
+package org.example.testassignmentcs.benchmark;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.example.testassignmentcs.controller.UserController;
+import org.example.testassignmentcs.dto.UserDto;
+import org.example.testassignmentcs.exception.CustomGlobalExceptionHandler;
+import org.example.testassignmentcs.exception.EntityNotFoundException;
+import org.example.testassignmentcs.exception.ErrorResponses;
+import org.example.testassignmentcs.filter.ClientResolver;
+import org.example.testassignmentcs.service.IdempotencyStore;
+import org.example.testassignmentcs.service.Result;
+import org.example.testassignmentcs.service.UserDataVersion;
+import org.example.testassignmentcs.service.UserService;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+// a 404 for an unknown id, answered from several threads with the lookup itself stubbed out,
+// so only the error path differs: the same exception thrown with a stack (as before) or
+// without one, or a failure returned to the controller
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 10, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ErrorPathBenchmark {
+    private static final String MESSAGE = "Can`t find user by id: ";
+
+    @Param({"stackTrace", "stackless", "result"})
+    private String errorPath;
+
+    private MockMvc mockMvc;
+
+    @Setup
+    public void setUp() {
+        UserService userService = Mockito.mock(UserService.class);
+        when(userService.tryFindById(anyLong())).thenAnswer(invocation -> {
+            Long id = invocation.getArgument(0);
+            return switch (errorPath) {
+                case "stackTrace" -> throw new TracedEntityNotFoundException(MESSAGE + id);
+                case "stackless" -> throw new EntityNotFoundException(MESSAGE + id);
+                default -> Result.<UserDto>failure(new EntityNotFoundException(MESSAGE + id));
+            };
+        });
+        ErrorResponses errorResponses = new ErrorResponses(new SimpleMeterRegistry());
+        UserController userController = new UserController(userService, new UserDataVersion(),
+                Mockito.mock(IdempotencyStore.class), new ObjectMapper(), errorResponses,
+                new ClientResolver(List.of()));
+        mockMvc = MockMvcBuilders.standaloneSetup(userController)
+                .setControllerAdvice(new CustomGlobalExceptionHandler(errorResponses))
+                .build();
+    }
+
+    @Benchmark
+    public int missingUser() throws Exception {
+        return mockMvc.perform(get("/users/" + Long.MAX_VALUE))
+                .andReturn().getResponse().getStatus();
+    }
+
+    private static class TracedEntityNotFoundException extends EntityNotFoundException {
+        TracedEntityNotFoundException(String message) {
+            super(message, true);
+        }
+    }
+}
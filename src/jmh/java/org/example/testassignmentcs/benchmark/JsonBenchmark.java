@@ -0,0 +1,75 @@
+package org.example.testassignmentcs.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.example.testassignmentcs.dto.UserDto;
+import org.example.testassignmentcs.dto.UserJsonComponent;
+import org.example.testassignmentcs.dto.WrapperDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+// pages are written into a reused stream, as the message converter streams into the response;
+// gc.alloc.rate.norm is then what serialization itself allocates per page
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonBenchmark {
+    @Param({"20", "1000"})
+    private int pageSize;
+    @Param({"default", "tuned"})
+    private String serializers;
+
+    private ObjectMapper objectMapper;
+    private WrapperDto<UserDto> page;
+    private ByteArrayOutputStream output;
+
+    @Setup
+    public void setUp() {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        if (serializers.equals("tuned")) {
+            builder.serializers(new UserJsonComponent.UserDtoSerializer(),
+                    new UserJsonComponent.WrapperDtoSerializer());
+        }
+        objectMapper = builder.build();
+        output = new ByteArrayOutputStream();
+        List<UserDto> users = IntStream.range(0, pageSize)
+                .mapToObj(i -> new UserDto()
+                        .setId((long) i)
+                        .setEmail("user" + i + "@example.com")
+                        .setFirstName("John")
+                        .setLastName("Smith")
+                        .setBirthDate(LocalDate.of(1990, 1, 1).plusDays(i))
+                        .setAddress("Baker Street")
+                        .setPhoneNumber("0677377711"))
+                .toList();
+        page = new WrapperDto<>();
+        page.setData(users);
+    }
+
+    @Benchmark
+    public int serializePage() throws IOException {
+        output.reset();
+        objectMapper.writeValue(output, page);
+        return output.size();
+    }
+}
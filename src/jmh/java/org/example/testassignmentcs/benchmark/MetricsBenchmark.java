@@ -0,0 +1,90 @@
+package org.example.testassignmentcs.benchmark;
+
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+    private MeterRegistry registry;
+    private Service direct;
+    private Service timed;
+    private long next;
+
+    @Setup
+    public void setUp() {
+        registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        // same histogram settings as the users.* meters in application.properties
+        registry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(
+                    Meter.Id id,
+                    DistributionStatisticConfig config
+            ) {
+                return DistributionStatisticConfig.builder()
+                        .percentilesHistogram(true)
+                        .build()
+                        .merge(config);
+            }
+        });
+        direct = new Service();
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new Service());
+        proxyFactory.addAspect(new TimedAspect(registry));
+        timed = proxyFactory.getProxy();
+    }
+
+    @Benchmark
+    public long direct() {
+        return direct.work(next++);
+    }
+
+    @Benchmark
+    public long timed() {
+        return timed.work(next++);
+    }
+
+    @Benchmark
+    public void statementSummary() {
+        DistributionSummary.builder("users.request.statements")
+                .tag("uri", "/users/{id}")
+                .register(registry)
+                .record(next++ & 7);
+    }
+
+    @Benchmark
+    public void errorCounter() {
+        registry.counter("users.errors",
+                "exception", "RegistrationException",
+                "status", "400").increment();
+    }
+
+    @Timed("users.benchmark")
+    public static class Service {
+        public long work(long value) {
+            return value * 31 + 7;
+        }
+    }
+}
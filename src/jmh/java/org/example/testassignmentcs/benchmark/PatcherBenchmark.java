@@ -0,0 +1,79 @@
+package org.example.testassignmentcs.benchmark;
+
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.example.testassignmentcs.dto.UserDto;
+import org.example.testassignmentcs.service.Patcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PatcherBenchmark {
+    private final Patcher patcher = new Patcher();
+    private UserDto existingUserDto;
+    private UserDto[] patches;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        existingUserDto = new UserDto()
+                .setId(1L)
+                .setEmail("john@example.com")
+                .setFirstName("John")
+                .setLastName("Smith")
+                .setBirthDate(LocalDate.of(1990, 1, 1))
+                .setAddress("Baker Street")
+                .setPhoneNumber("0677377711");
+        patches = new UserDto[] {
+                new UserDto()
+                        .setEmail("dave@example.com")
+                        .setFirstName("Dave"),
+                new UserDto()
+                        .setEmail("john@example.com")
+                        .setFirstName("John")
+        };
+    }
+
+    @Benchmark
+    public UserDto reflective() throws IllegalAccessException {
+        reflectivePatch(existingUserDto, nextPatch());
+        return existingUserDto;
+    }
+
+    @Benchmark
+    public List<String> precompiled() {
+        return patcher.internPatcher(existingUserDto, nextPatch());
+    }
+
+    private UserDto nextPatch() {
+        next ^= 1;
+        return patches[next];
+    }
+
+    private static void reflectivePatch(UserDto existingUserDto, UserDto incompleteUserDto)
+            throws IllegalAccessException {
+        for (Field field : UserDto.class.getDeclaredFields()) {
+            field.setAccessible(true);
+            Object value = field.get(incompleteUserDto);
+            if (value != null) {
+                field.set(existingUserDto, value);
+            }
+            field.setAccessible(false);
+        }
+    }
+}
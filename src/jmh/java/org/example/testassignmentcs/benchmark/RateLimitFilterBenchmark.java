@@ -0,0 +1,96 @@
+package org.example.testassignmentcs.benchmark;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.example.testassignmentcs.filter.ClientResolver;
+import org.example.testassignmentcs.filter.RateLimitFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+// limits high enough that every request passes, which is the path every request pays for
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RateLimitFilterBenchmark {
+    private static final int CLIENTS = 1024;
+    private static final FilterChain NO_OP_CHAIN = (request, response) -> { };
+
+    private OncePerRequestFilter passThrough;
+    private RateLimitFilter filter;
+    private MockHttpServletRequest[] requests;
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setUp() {
+        passThrough = new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(
+                    HttpServletRequest request,
+                    HttpServletResponse response,
+                    FilterChain filterChain
+            ) throws ServletException, IOException {
+                filterChain.doFilter(request, response);
+            }
+        };
+        filter = new RateLimitFilter(
+                new ClientResolver(List.of()), 1e9, 1_000_000, 1e9, 1_000_000, CLIENTS);
+        requests = new MockHttpServletRequest[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            requests[i] = new MockHttpServletRequest("GET", "/users/search");
+            requests[i].setRemoteAddr("10.0." + i / 256 + "." + i % 256);
+        }
+        response = new MockHttpServletResponse();
+    }
+
+    // the filter plumbing alone, so the difference to the others is the limiter itself
+    @Benchmark
+    public void passThrough(ClientIndex index) throws ServletException, IOException {
+        passThrough.doFilter(requests[index.next()], response, NO_OP_CHAIN);
+    }
+
+    @Benchmark
+    public void manyClients(ClientIndex index) throws ServletException, IOException {
+        filter.doFilter(requests[index.next()], response, NO_OP_CHAIN);
+    }
+
+    @Benchmark
+    public void oneClient() throws ServletException, IOException {
+        filter.doFilter(requests[0], response, NO_OP_CHAIN);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void oneClientContended() throws ServletException, IOException {
+        filter.doFilter(requests[0], response, NO_OP_CHAIN);
+    }
+
+    @State(Scope.Thread)
+    public static class ClientIndex {
+        private int next;
+
+        int next() {
+            next = (next + 1) & (CLIENTS - 1);
+            return next;
+        }
+    }
+}
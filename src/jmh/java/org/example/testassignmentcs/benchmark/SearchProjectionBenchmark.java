@@ -0,0 +1,98 @@
+package org.example.testassignmentcs.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.example.testassignmentcs.Application;
+import org.example.testassignmentcs.dto.UserCreateRequestDto;
+import org.example.testassignmentcs.service.UserService;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+// run with the gc profiler of the benchmark profile: gc.alloc.rate.norm is bytes per request,
+// and the responseBytes secondary result is the size of one response
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchProjectionBenchmark {
+    private static final int SEEDED_USERS = 10_000;
+    private static final LocalDate FIRST_BIRTH_DATE = LocalDate.of(1970, 1, 1);
+    private static final Pageable PAGE = PageRequest.of(5, 100);
+
+    @Param({"", "id,email"})
+    private String fields;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private ObjectMapper objectMapper;
+    private List<String> projection;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:benchmark",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN");
+        userService = context.getBean(UserService.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        projection = fields.isEmpty() ? null : Arrays.asList(fields.split(","));
+        userService.saveAll(IntStream.range(0, SEEDED_USERS)
+                .mapToObj(i -> new UserCreateRequestDto()
+                        .setEmail("seed" + i + "@example.com")
+                        .setFirstName("John")
+                        .setLastName("Smith")
+                        .setBirthDate(FIRST_BIRTH_DATE.plusDays(i))
+                        .setAddress("221B Baker Street, London NW1 6XE")
+                        .setPhoneNumber("0677377711"))
+                .iterator());
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] search(ResponseSize responseSize) throws JsonProcessingException {
+        LocalDate toDate = FIRST_BIRTH_DATE.plusDays(SEEDED_USERS);
+        byte[] response = objectMapper.writeValueAsBytes(projection == null
+                ? userService.findAllUsersAgeBetween(FIRST_BIRTH_DATE, toDate, PAGE)
+                : userService.findAllUsersAgeBetween(FIRST_BIRTH_DATE, toDate, projection, PAGE));
+        responseSize.bytes = response.length;
+        return response;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ResponseSize {
+        private long bytes;
+
+        public long responseBytes() {
+            return bytes;
+        }
+    }
+}
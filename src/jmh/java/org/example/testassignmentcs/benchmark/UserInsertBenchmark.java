@@ -0,0 +1,81 @@
+package org.example.testassignmentcs.benchmark;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.example.testassignmentcs.Application;
+import org.example.testassignmentcs.dto.BatchResultDto;
+import org.example.testassignmentcs.dto.UserCreateRequestDto;
+import org.example.testassignmentcs.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+// scores are inserted users per second, for single POSTs and for 1,000-user batch chunks
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 10, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserInsertBenchmark {
+    private static final int CHUNK = 1000;
+    private static final LocalDate BIRTH_DATE = LocalDate.of(1990, 1, 1);
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private long nextEmail;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:benchmark",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN",
+                        "--api.batch_size=" + CHUNK);
+        userService = context.getBean(UserService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Long save() {
+        return userService.save(request(nextEmail++));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK)
+    public BatchResultDto saveAll() {
+        long first = nextEmail;
+        nextEmail += CHUNK;
+        return userService.saveAll(IntStream.range(0, CHUNK)
+                .mapToObj(i -> request(first + i))
+                .iterator());
+    }
+
+    private static UserCreateRequestDto request(long email) {
+        return new UserCreateRequestDto()
+                .setEmail("user" + email + "@example.com")
+                .setFirstName("John")
+                .setLastName("Smith")
+                .setBirthDate(BIRTH_DATE)
+                .setAddress("Baker Street")
+                .setPhoneNumber("0677377711");
+    }
+}
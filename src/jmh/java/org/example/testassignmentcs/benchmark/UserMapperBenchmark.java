@@ -0,0 +1,60 @@
+package org.example.testassignmentcs.benchmark;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import org.example.testassignmentcs.dto.UserCreateRequestDto;
+import org.example.testassignmentcs.dto.UserDto;
+import org.example.testassignmentcs.mapper.UserMapper;
+import org.example.testassignmentcs.mapperimpl.UserMapperImpl;
+import org.example.testassignmentcs.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UserMapperBenchmark {
+    private final UserMapper userMapper = new UserMapperImpl();
+    private User user;
+    private UserCreateRequestDto requestDto;
+
+    @Setup
+    public void setUp() {
+        user = new User()
+                .setId(1L)
+                .setEmail("john@example.com")
+                .setFirstName("John")
+                .setLastName("Smith")
+                .setBirthDate(LocalDate.of(1990, 1, 1))
+                .setAddress("Baker Street")
+                .setPhoneNumber("0677377711");
+        requestDto = new UserCreateRequestDto()
+                .setEmail(user.getEmail())
+                .setFirstName(user.getFirstName())
+                .setLastName(user.getLastName())
+                .setBirthDate(user.getBirthDate())
+                .setAddress(user.getAddress())
+                .setPhoneNumber(user.getPhoneNumber());
+    }
+
+    @Benchmark
+    public UserDto toDto() {
+        return userMapper.toDto(user);
+    }
+
+    @Benchmark
+    public User toModel() {
+        return userMapper.toModel(requestDto);
+    }
+}
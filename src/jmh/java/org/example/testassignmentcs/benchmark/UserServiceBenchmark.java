@@ -0,0 +1,88 @@
+package org.example.testassignmentcs.benchmark;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.example.testassignmentcs.Application;
+import org.example.testassignmentcs.dto.UserCreateRequestDto;
+import org.example.testassignmentcs.dto.UserDto;
+import org.example.testassignmentcs.dto.WrapperDto;
+import org.example.testassignmentcs.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserServiceBenchmark {
+    private static final int SEEDED_USERS = 10_000;
+    private static final LocalDate FIRST_BIRTH_DATE = LocalDate.of(1970, 1, 1);
+    private static final Pageable PAGE = PageRequest.of(5, 20);
+
+    @Param({"true", "false"})
+    private boolean instrumented;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private long nextEmail;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:benchmark",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN",
+                        "--management.observations.annotations.enabled=" + instrumented,
+                        "--management.metrics.data.repository.autotime.enabled="
+                                + instrumented);
+        userService = context.getBean(UserService.class);
+        userService.saveAll(IntStream.range(0, SEEDED_USERS)
+                .mapToObj(i -> request("seed" + i, FIRST_BIRTH_DATE.plusDays(i)))
+                .iterator());
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Long save() {
+        return userService.save(request("user" + nextEmail++, FIRST_BIRTH_DATE));
+    }
+
+    @Benchmark
+    public WrapperDto<UserDto> findAllUsersAgeBetween() {
+        return userService.findAllUsersAgeBetween(
+                FIRST_BIRTH_DATE, FIRST_BIRTH_DATE.plusDays(SEEDED_USERS / 2), PAGE);
+    }
+
+    private static UserCreateRequestDto request(String name, LocalDate birthDate) {
+        return new UserCreateRequestDto()
+                .setEmail(name + "@example.com")
+                .setFirstName("John")
+                .setLastName("Smith")
+                .setBirthDate(birthDate)
+                .setAddress("Baker Street")
+                .setPhoneNumber("0677377711");
+    }
+}
@@ -0,0 +1,79 @@
+package org.example.testassignmentcs.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+@Configuration
+public class DataSourceConfig {
+    private static final String HIKARI_PROPERTIES = "spring.datasource.hikari";
+    private static final String REPLICA_PROPERTIES = "api.datasource.replicas";
+    private static final String PRIMARY_POOL = "primary";
+    private static final String SHARD_POOL = "shard-";
+    private static final String REPLICA_POOL = "replica-";
+    private static final String SHARDS_WITH_REPLICAS_MESSAGE
+            = "Replicas can't be combined with shards";
+
+    // the pools are not beans of their own, so everything, Hibernate and JdbcTemplate
+    // included, shares the one routing DataSource; shards and replicas reuse the primary's
+    // credentials and pool settings, and each replica may override the latter with its own
+    // api.datasource.replicas[n].* since replicas are often sized differently
+    @Bean
+    public ReadWriteRoutingDataSource dataSource(
+            DataSourceProperties properties,
+            Environment environment,
+            MeterRegistry meterRegistry,
+            @Value("${api.datasource.shard_urls}")
+            List<String> shardUrls,
+            @Value("${api.datasource.replica_urls}")
+            List<String> replicaUrls
+    ) {
+        if (!shardUrls.isEmpty() && !replicaUrls.isEmpty()) {
+            throw new IllegalStateException(SHARDS_WITH_REPLICAS_MESSAGE);
+        }
+        List<HikariDataSource> shards = new ArrayList<>(shardUrls.size() + 1);
+        shards.add(pool(properties, properties.determineUrl(), PRIMARY_POOL, meterRegistry));
+        for (String shardUrl : shardUrls) {
+            shards.add(pool(properties, shardUrl, SHARD_POOL + shards.size(), meterRegistry));
+        }
+        Binder binder = Binder.get(environment);
+        for (HikariDataSource shard : shards) {
+            binder.bind(HIKARI_PROPERTIES, Bindable.ofInstance(shard));
+        }
+        List<HikariDataSource> replicas = new ArrayList<>(replicaUrls.size());
+        for (String replicaUrl : replicaUrls) {
+            HikariDataSource replica = pool(properties, replicaUrl,
+                    REPLICA_POOL + replicas.size(), meterRegistry);
+            binder.bind(HIKARI_PROPERTIES, Bindable.ofInstance(replica));
+            binder.bind(REPLICA_PROPERTIES + "[" + replicas.size() + "]",
+                    Bindable.ofInstance(replica));
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+        return new ReadWriteRoutingDataSource(shards, replicas);
+    }
+
+    private static HikariDataSource pool(
+            DataSourceProperties properties,
+            String url,
+            String name,
+            MeterRegistry meterRegistry
+    ) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .build();
+        pool.setPoolName(name);
+        pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return pool;
+    }
+}
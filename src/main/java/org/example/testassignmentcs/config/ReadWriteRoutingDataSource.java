@@ -0,0 +1,111 @@
+package org.example.testassignmentcs.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// the physical connection is only taken on the first statement, once the transaction has been
+// marked read-only, so the pool can be chosen by it; Hibernate asks for the connection as soon
+// as the transaction begins
+public class ReadWriteRoutingDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+    // set for the requests whose read-only transactions may be served by a replica
+    private static final ThreadLocal<Boolean> REPLICA_READS = new ThreadLocal<>();
+    // the shard the current thread works on; the first one when unset
+    private static final ThreadLocal<Integer> SHARD = new ThreadLocal<>();
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    // the first shard is the primary; replicas only serve an unsharded primary
+    public ReadWriteRoutingDataSource(
+            List<HikariDataSource> shards,
+            List<HikariDataSource> replicas
+    ) {
+        pools.addAll(shards);
+        pools.addAll(replicas);
+        Router router = new Router(shards, replicas);
+        router.afterPropertiesSet();
+        setTargetDataSource(router);
+    }
+
+    public static void setReplicaReads(boolean replicaReads) {
+        if (replicaReads) {
+            REPLICA_READS.set(Boolean.TRUE);
+        } else {
+            REPLICA_READS.remove();
+        }
+    }
+
+    public static boolean isReplicaReads() {
+        return REPLICA_READS.get() != null;
+    }
+
+    // for reads that outlive the request, like cache fills: a replica that hasn't caught up
+    // yet would keep an overwritten row around long after the write
+    public static <T> T onPrimary(Supplier<T> read) {
+        boolean replicaReads = isReplicaReads();
+        REPLICA_READS.remove();
+        try {
+            return read.get();
+        } finally {
+            setReplicaReads(replicaReads);
+        }
+    }
+
+    public static <T> T onShard(int shard, Supplier<T> work) {
+        Integer previousShard = SHARD.get();
+        SHARD.set(shard);
+        try {
+            return work.get();
+        } finally {
+            SHARD.set(previousShard);
+        }
+    }
+
+    public static int currentShard() {
+        Integer shard = SHARD.get();
+        return shard == null ? 0 : shard;
+    }
+
+    @Override
+    public void close() {
+        pools.forEach(HikariDataSource::close);
+    }
+
+    private static class Router extends AbstractRoutingDataSource {
+        private final List<String> shardKeys = new ArrayList<>();
+        private final List<String> replicaKeys = new ArrayList<>();
+        private final AtomicInteger next = new AtomicInteger();
+
+        Router(List<HikariDataSource> shards, List<HikariDataSource> replicas) {
+            Map<Object, Object> targets = new HashMap<>();
+            for (HikariDataSource shard : shards) {
+                targets.put(shard.getPoolName(), shard);
+                shardKeys.add(shard.getPoolName());
+            }
+            for (HikariDataSource replica : replicas) {
+                targets.put(replica.getPoolName(), replica);
+                replicaKeys.add(replica.getPoolName());
+            }
+            setTargetDataSources(targets);
+            setDefaultTargetDataSource(shards.get(0));
+            setLenientFallback(false);
+        }
+
+        @Override
+        protected Object determineCurrentLookupKey() {
+            if (replicaKeys.isEmpty() || !isReplicaReads()
+                    || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+                return shardKeys.get(currentShard());
+            }
+            return replicaKeys.get(Math.floorMod(next.getAndIncrement(), replicaKeys.size()));
+        }
+    }
+}
@@ -1,15 +1,42 @@
 package org.example.testassignmentcs.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.HexFormat;
+import java.util.List;
 import lombok.RequiredArgsConstructor;
+import org.example.testassignmentcs.dto.BatchDeleteResultDto;
+import org.example.testassignmentcs.dto.BatchResultDto;
+import org.example.testassignmentcs.dto.BirthYearStatsDto;
 import org.example.testassignmentcs.dto.UserCreateRequestDto;
 import org.example.testassignmentcs.dto.UserDto;
 import org.example.testassignmentcs.dto.WrapperDto;
+import org.example.testassignmentcs.exception.ErrorResponses;
+import org.example.testassignmentcs.filter.ClientResolver;
+import org.example.testassignmentcs.filter.ReplicaReadFilter;
+import org.example.testassignmentcs.service.IdempotencyStore;
+import org.example.testassignmentcs.service.Result;
+import org.example.testassignmentcs.service.UserDataVersion;
 import org.example.testassignmentcs.service.UserService;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -18,23 +45,69 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/users")
 @RequiredArgsConstructor
 public class UserController {
+    private static final char NDJSON_LINE_SEPARATOR = '\n';
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String WEAK_ETAG_PREFIX = "W/";
+    private static final String FINGERPRINT_ALGORITHM = "SHA-256";
+    private static final String DELETE_ARGUMENTS_MESSAGE
+            = "Either a list of ids or both 'from' and 'to' dates must be given";
+
     private final UserService userService;
+    private final UserDataVersion userDataVersion;
+    private final IdempotencyStore idempotencyStore;
+    private final ObjectMapper objectMapper;
+    private final ErrorResponses errorResponses;
+    private final ClientResolver clientResolver;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
-    public ResponseEntity<UserDto> createUser(@RequestBody @Valid UserCreateRequestDto requestDto) {
-        Long userId = userService.save(requestDto);
-        String resourceUrl = "/users/" + userId;
-        return ResponseEntity.created(URI.create(resourceUrl)).build();
+    public ResponseEntity<Object> createUser(
+            @RequestBody @Valid UserCreateRequestDto requestDto,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false)
+            String idempotencyKey,
+            HttpServletRequest request) {
+        if (idempotencyKey == null) {
+            // a rejected registration is answered here instead of unwinding through the resolvers
+            Result<Long> result = userService.trySave(requestDto);
+            return result.isSuccess()
+                    ? created(result.value()) : errorResponses.of(result.error());
+        }
+        // a retried request gets the first 201 back without reaching the users table
+        return created(idempotencyStore.computeIfAbsent(clientResolver.clientOf(request),
+                idempotencyKey, fingerprint(requestDto), () -> userService.save(requestDto)));
+    }
+
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public BatchResultDto createUsers(@RequestBody List<UserCreateRequestDto> requestDtos) {
+        return userService.saveAll(requestDtos.iterator());
+    }
+
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public BatchResultDto createUsersFromStream(InputStream inputStream) throws IOException {
+        try (MappingIterator<UserCreateRequestDto> requestDtos = objectMapper
+                .readerFor(UserCreateRequestDto.class)
+                .readValues(inputStream)) {
+            return userService.saveAll(requestDtos);
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Object> getUser(@PathVariable Long id) {
+        Result<UserDto> result = userService.tryFindById(id);
+        return result.isSuccess()
+                ? ResponseEntity.ok(result.value()) : errorResponses.of(result.error());
     }
 
     @PatchMapping("/{id}")
@@ -52,11 +125,51 @@ public class UserController {
     }
 
     @GetMapping("/search")
-    public WrapperDto<UserDto> getAllUsersByBirthDateRange(
+    public ResponseEntity<WrapperDto<?>> getAllUsersByBirthDateRange(
             @RequestParam(value = "from") LocalDate fromDate,
             @RequestParam(value = "to") LocalDate toDate,
-            Pageable pageable) {
-        return userService.findAllUsersAgeBetween(fromDate, toDate, pageable);
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "fields", required = false) List<String> fields,
+            Pageable pageable,
+            WebRequest webRequest) {
+        // an invalid request is rejected before its ETag is looked at, so it never gets a 304
+        userService.checkSearch(fromDate, toDate, fields, pageable.getSort(), cursor);
+        // the version is read before the query, so a write racing with it can only make the
+        // ETag older than the page, never newer; an unchanged table answers 304 without SQL
+        Duration replicaLag = (Duration) webRequest.getAttribute(
+                ReplicaReadFilter.REPLICA_LAG_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        String etag = replicaLag == null
+                ? userDataVersion.etag() : userDataVersion.etag(replicaLag);
+        if (etag == null) {
+            return ResponseEntity.ok(search(fromDate, toDate, cursor, fields, pageable));
+        }
+        if (isNotModified(webRequest, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        // the ETag is only added to the page, so a failed query does not answer with one
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .body(search(fromDate, toDate, cursor, fields, pageable));
+    }
+
+    @GetMapping("/stats/birth-years")
+    public BirthYearStatsDto getBirthYearStats() {
+        return userService.findBirthYearStats();
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportUsersByBirthDateRange(
+            @RequestParam(value = "from") LocalDate fromDate,
+            @RequestParam(value = "to") LocalDate toDate,
+            HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        ObjectWriter writer = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = objectMapper.createGenerator(response.getOutputStream())) {
+            generator.setRootValueSeparator(null);
+            userService.exportUsersAgeBetween(fromDate, toDate,
+                    userDto -> writeLine(writer, generator, userDto));
+        }
     }
 
     @DeleteMapping("/{id}")
@@ -64,4 +177,87 @@ public class UserController {
     public void delete(@PathVariable Long id) {
         userService.deleteById(id);
     }
+
+    @DeleteMapping
+    public BatchDeleteResultDto deleteUsers(
+            @RequestParam(value = "from", required = false) LocalDate fromDate,
+            @RequestParam(value = "to", required = false) LocalDate toDate,
+            @RequestBody(required = false) List<Long> ids) {
+        if (ids != null && fromDate == null && toDate == null) {
+            return userService.deleteAllById(ids);
+        }
+        if (ids == null && fromDate != null && toDate != null) {
+            return userService.deleteAllUsersAgeBetween(fromDate, toDate);
+        }
+        throw new IllegalArgumentException(DELETE_ARGUMENTS_MESSAGE);
+    }
+
+    private WrapperDto<?> search(
+            LocalDate fromDate,
+            LocalDate toDate,
+            String cursor,
+            List<String> fields,
+            Pageable pageable) {
+        if (fields != null && cursor != null) {
+            return userService.findAllUsersAgeBetween(
+                    fromDate, toDate, fields, cursor, pageable.getPageSize());
+        }
+        if (fields != null) {
+            return userService.findAllUsersAgeBetween(fromDate, toDate, fields, pageable);
+        }
+        if (cursor != null) {
+            return userService.findAllUsersAgeBetween(
+                    fromDate, toDate, cursor, pageable.getPageSize());
+        }
+        return userService.findAllUsersAgeBetween(fromDate, toDate, pageable);
+    }
+
+    // the digest of the body as parsed, so a retry differing only in whitespace or key order
+    // is still the same request
+    private String fingerprint(UserCreateRequestDto requestDto) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance(FINGERPRINT_ALGORITHM)
+                    .digest(objectMapper.writeValueAsBytes(requestDto)));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ResponseEntity<Object> created(Long userId) {
+        String resourceUrl = "/users/" + userId;
+        return ResponseEntity.created(URI.create(resourceUrl)).build();
+    }
+
+    private void writeLine(ObjectWriter writer, JsonGenerator generator, UserDto userDto) {
+        try {
+            writer.writeValue(generator, userDto);
+            generator.writeRaw(NDJSON_LINE_SEPARATOR);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // If-None-Match uses the weak comparison, so a W/ prefix on either side is ignored
+    private static boolean isNotModified(WebRequest webRequest, String etag) {
+        String[] ifNoneMatch = webRequest.getHeaderValues(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaqueTag = opaqueTag(etag);
+        for (String header : ifNoneMatch) {
+            for (String requested : header.split(",")) {
+                String tag = requested.trim();
+                if (tag.equals("*") || opaqueTag(tag).equals(opaqueTag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String opaqueTag(String etag) {
+        return etag.startsWith(WEAK_ETAG_PREFIX) ? etag.substring(WEAK_ETAG_PREFIX.length()) : etag;
+    }
 }
@@ -0,0 +1,13 @@
+package org.example.testassignmentcs.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+@Data
+@Accessors(chain = true)
+public class BatchDeleteResultDto {
+    private int deleted;
+    private List<Integer> chunks = new ArrayList<>();
+}
@@ -0,0 +1,19 @@
+package org.example.testassignmentcs.dto;
+
+import java.util.List;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+@Data
+@Accessors(chain = true)
+public class BatchItemResultDto {
+    private int index;
+    private Long id;
+    private Status status;
+    private List<String> errors;
+
+    public enum Status {
+        CREATED,
+        REJECTED
+    }
+}
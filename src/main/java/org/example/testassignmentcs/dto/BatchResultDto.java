@@ -0,0 +1,14 @@
+package org.example.testassignmentcs.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+@Data
+@Accessors(chain = true)
+public class BatchResultDto {
+    private int created;
+    private int rejected;
+    private List<BatchItemResultDto> results = new ArrayList<>();
+}
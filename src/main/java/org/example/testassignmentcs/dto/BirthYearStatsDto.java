@@ -0,0 +1,14 @@
+package org.example.testassignmentcs.dto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+@Data
+@Accessors(chain = true)
+public class BirthYearStatsDto {
+    private long total;
+    private Map<Integer, Long> birthYears = new LinkedHashMap<>();
+    private Map<String, Long> ageBuckets = new LinkedHashMap<>();
+}
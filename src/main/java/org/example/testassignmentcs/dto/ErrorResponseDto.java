@@ -0,0 +1,15 @@
+package org.example.testassignmentcs.dto;
+
+import java.time.LocalDateTime;
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.springframework.http.HttpStatus;
+
+@Data
+@Accessors(chain = true)
+public class ErrorResponseDto {
+    private LocalDateTime timestamp;
+    private HttpStatus status;
+    // a single message, or the list of validation messages
+    private Object errors;
+}
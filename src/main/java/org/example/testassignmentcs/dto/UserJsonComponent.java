@@ -0,0 +1,133 @@
+package org.example.testassignmentcs.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
+import java.time.LocalDate;
+import org.springframework.boot.jackson.JsonComponent;
+
+// hand-written serializers for the hot response types; the output is byte-for-byte what the
+// default bean serializers write, but with pre-encoded names and no reflection per property
+@JsonComponent
+public class UserJsonComponent {
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString EMAIL = new SerializedString("email");
+    private static final SerializableString FIRST_NAME = new SerializedString("firstName");
+    private static final SerializableString LAST_NAME = new SerializedString("lastName");
+    private static final SerializableString BIRTH_DATE = new SerializedString("birthDate");
+    private static final SerializableString ADDRESS = new SerializedString("address");
+    private static final SerializableString PHONE_NUMBER = new SerializedString("phoneNumber");
+    private static final SerializableString DATA = new SerializedString("data");
+    private static final SerializableString NEXT_CURSOR = new SerializedString("nextCursor");
+    private static final int DATE_LENGTH = 10;
+
+    public static class UserDtoSerializer extends StdSerializer<UserDto> {
+        public UserDtoSerializer() {
+            super(UserDto.class);
+        }
+
+        @Override
+        public void serialize(UserDto user, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            writeUser(user, generator, new char[DATE_LENGTH]);
+        }
+    }
+
+    public static class WrapperDtoSerializer extends StdSerializer<WrapperDto<?>> {
+        public WrapperDtoSerializer() {
+            super(WrapperDto.class, false);
+        }
+
+        @Override
+        public void serialize(
+                WrapperDto<?> wrapper,
+                JsonGenerator generator,
+                SerializerProvider provider
+        ) throws IOException {
+            generator.writeStartObject(wrapper);
+            generator.writeFieldName(DATA);
+            if (wrapper.getData() == null) {
+                generator.writeNull();
+            } else {
+                // one date buffer for the whole page
+                char[] dateBuffer = new char[DATE_LENGTH];
+                generator.writeStartArray(wrapper.getData(), wrapper.getData().size());
+                for (Object row : wrapper.getData()) {
+                    if (row instanceof UserDto user) {
+                        writeUser(user, generator, dateBuffer);
+                    } else {
+                        // projected rows are plain maps
+                        provider.defaultSerializeValue(row, generator);
+                    }
+                }
+                generator.writeEndArray();
+            }
+            if (wrapper.getNextCursor() != null) {
+                generator.writeFieldName(NEXT_CURSOR);
+                generator.writeString(wrapper.getNextCursor());
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    private static void writeUser(UserDto user, JsonGenerator generator, char[] dateBuffer)
+            throws IOException {
+        generator.writeStartObject(user);
+        generator.writeFieldName(ID);
+        if (user.getId() == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(user.getId());
+        }
+        writeString(generator, EMAIL, user.getEmail());
+        writeString(generator, FIRST_NAME, user.getFirstName());
+        writeString(generator, LAST_NAME, user.getLastName());
+        generator.writeFieldName(BIRTH_DATE);
+        writeDate(generator, user.getBirthDate(), dateBuffer);
+        writeString(generator, ADDRESS, user.getAddress());
+        writeString(generator, PHONE_NUMBER, user.getPhoneNumber());
+        generator.writeEndObject();
+    }
+
+    private static void writeString(JsonGenerator generator, SerializableString name, String value)
+            throws IOException {
+        generator.writeFieldName(name);
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeString(value);
+        }
+    }
+
+    // yyyy-MM-dd straight into the buffer, as LocalDate.toString() would write it
+    private static void writeDate(JsonGenerator generator, LocalDate date, char[] buffer)
+            throws IOException {
+        if (date == null) {
+            generator.writeNull();
+            return;
+        }
+        int year = date.getYear();
+        if (year < 0 || year > 9999) {
+            generator.writeString(date.toString());
+            return;
+        }
+        buffer[0] = digit(year / 1000);
+        buffer[1] = digit(year / 100 % 10);
+        buffer[2] = digit(year / 10 % 10);
+        buffer[3] = digit(year % 10);
+        buffer[4] = '-';
+        buffer[5] = digit(date.getMonthValue() / 10);
+        buffer[6] = digit(date.getMonthValue() % 10);
+        buffer[7] = '-';
+        buffer[8] = digit(date.getDayOfMonth() / 10);
+        buffer[9] = digit(date.getDayOfMonth() % 10);
+        generator.writeString(buffer, 0, DATE_LENGTH);
+    }
+
+    private static char digit(int value) {
+        return (char) ('0' + value);
+    }
+}
@@ -1,9 +1,12 @@
 package org.example.testassignmentcs.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import java.util.List;
 import lombok.Data;
 
 @Data
 public class WrapperDto<T> {
     private List<T> data;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
 }
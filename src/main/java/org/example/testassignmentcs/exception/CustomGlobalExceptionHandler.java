@@ -1,9 +1,7 @@
 package org.example.testassignmentcs.exception;
 
-import java.time.LocalDateTime;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
+import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
@@ -17,10 +15,9 @@ import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
 @ControllerAdvice
+@RequiredArgsConstructor
 public class CustomGlobalExceptionHandler extends ResponseEntityExceptionHandler {
-    private static final String TIMESTAMP = "timestamp";
-    private static final String STATUS = "status";
-    private static final String ERRORS = "errors";
+    private final ErrorResponses errorResponses;
 
     @Override
     protected ResponseEntity<Object> handleMethodArgumentNotValid(
@@ -29,29 +26,31 @@ public class CustomGlobalExceptionHandler extends ResponseEntityExceptionHandler
             HttpStatusCode status,
             WebRequest request
     ) {
-        Map<String, Object> body = new LinkedHashMap<>();
-        body.put(TIMESTAMP, LocalDateTime.now());
-        body.put(STATUS, HttpStatus.BAD_REQUEST);
         List<String> errors = ex.getAllErrors().stream()
                 .map(this::getErrorMessage)
                 .toList();
-        body.put(ERRORS, errors);
-        return new ResponseEntity<>(body, headers, status);
+        return errorResponses.build(ex, HttpStatus.BAD_REQUEST, errors, headers);
     }
 
-    @ExceptionHandler(RegistrationException.class)
-    public ResponseEntity<Object> registrationExceptionHandler(Exception exception) {
-        return buildResponse(exception, HttpStatus.BAD_REQUEST);
+    @ExceptionHandler({
+            RegistrationException.class,
+            EntityNotFoundException.class,
+            IllegalArgumentException.class
+    })
+    public ResponseEntity<Object> domainExceptionHandler(RuntimeException exception) {
+        return errorResponses.of(exception);
     }
 
-    @ExceptionHandler(EntityNotFoundException.class)
-    public ResponseEntity<Object> entityNotFoundExceptionHandler(Exception exception) {
-        return buildResponse(exception, HttpStatus.NOT_FOUND);
-    }
-
-    @ExceptionHandler(java.lang.IllegalArgumentException.class)
-    public ResponseEntity<Object> illegalArgumentExceptionHandler(Exception exception) {
-        return buildResponse(exception, HttpStatus.BAD_REQUEST);
+    @Override
+    protected ResponseEntity<Object> handleExceptionInternal(
+            Exception ex,
+            Object body,
+            HttpHeaders headers,
+            HttpStatusCode statusCode,
+            WebRequest request
+    ) {
+        errorResponses.count(ex, statusCode);
+        return super.handleExceptionInternal(ex, body, headers, statusCode, request);
     }
 
     private String getErrorMessage(ObjectError e) {
@@ -62,12 +61,4 @@ public class CustomGlobalExceptionHandler extends ResponseEntityExceptionHandler
         }
         return e.getDefaultMessage();
     }
-
-    private ResponseEntity<Object> buildResponse(Exception exception, HttpStatus status) {
-        Map<String, Object> body = new LinkedHashMap<>();
-        body.put(TIMESTAMP, LocalDateTime.now());
-        body.put(STATUS, status);
-        body.put(ERRORS, exception.getMessage());
-        return new ResponseEntity<>(body, status);
-    }
 }
@@ -1,7 +1,11 @@
 package org.example.testassignmentcs.exception;
 
-public class EntityNotFoundException extends RuntimeException {
+public class EntityNotFoundException extends StacklessException {
     public EntityNotFoundException(String message) {
         super(message);
     }
+
+    protected EntityNotFoundException(String message, boolean writableStackTrace) {
+        super(message, writableStackTrace);
+    }
 }
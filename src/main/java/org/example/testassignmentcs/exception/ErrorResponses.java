@@ -0,0 +1,57 @@
+package org.example.testassignmentcs.exception;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.RequiredArgsConstructor;
+import org.example.testassignmentcs.dto.ErrorResponseDto;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class ErrorResponses {
+    private static final String ERRORS_METRIC = "users.errors";
+    private static final String EXCEPTION_TAG = "exception";
+    private static final String STATUS_TAG = "status";
+
+    private final MeterRegistry meterRegistry;
+    // resolved once per exception type and status instead of building tags on every error
+    private final Map<CounterKey, Counter> counters = new ConcurrentHashMap<>();
+
+    public ResponseEntity<Object> of(RuntimeException exception) {
+        HttpStatus status = exception instanceof EntityNotFoundException
+                ? HttpStatus.NOT_FOUND : HttpStatus.BAD_REQUEST;
+        return build(exception, status, exception.getMessage(), null);
+    }
+
+    public ResponseEntity<Object> build(
+            Exception exception,
+            HttpStatus status,
+            Object errors,
+            HttpHeaders headers
+    ) {
+        count(exception, status);
+        ErrorResponseDto body = new ErrorResponseDto()
+                .setTimestamp(LocalDateTime.now())
+                .setStatus(status)
+                .setErrors(errors);
+        return new ResponseEntity<>(body, headers, status);
+    }
+
+    public void count(Exception exception, HttpStatusCode status) {
+        counters.computeIfAbsent(new CounterKey(exception.getClass(), status.value()),
+                key -> meterRegistry.counter(ERRORS_METRIC,
+                        EXCEPTION_TAG, key.type().getSimpleName(),
+                        STATUS_TAG, String.valueOf(key.status())))
+                .increment();
+    }
+
+    private record CounterKey(Class<?> type, int status) {
+    }
+}
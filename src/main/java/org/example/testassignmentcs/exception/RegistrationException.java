@@ -1,6 +1,6 @@
 package org.example.testassignmentcs.exception;
 
-public class RegistrationException extends RuntimeException {
+public class RegistrationException extends StacklessException {
     public RegistrationException(String message) {
         super(message);
     }
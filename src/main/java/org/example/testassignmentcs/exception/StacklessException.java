@@ -0,0 +1,13 @@
+package org.example.testassignmentcs.exception;
+
+// an expected outcome answered with a 4xx: the stack trace is never logged or read, yet
+// capturing it would cost more than building the whole response
+public abstract class StacklessException extends RuntimeException {
+    protected StacklessException(String message) {
+        this(message, false);
+    }
+
+    protected StacklessException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
+}
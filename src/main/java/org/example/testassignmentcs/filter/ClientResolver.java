@@ -0,0 +1,34 @@
+package org.example.testassignmentcs.filter;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.List;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ClientResolver {
+    private static final String CLIENT_HEADER = "X-Client-Id";
+
+    private final Set<String> trustedProxies;
+
+    public ClientResolver(
+            @Value("${api.trusted_proxies}")
+            List<String> trustedProxies
+    ) {
+        this.trustedProxies = Set.copyOf(trustedProxies);
+    }
+
+    // the client id header can be set by anyone, so it is only taken from a proxy that is known
+    // to overwrite it; otherwise a client is its authenticated user or its address
+    public String clientOf(HttpServletRequest request) {
+        if (request.getRemoteUser() != null) {
+            return request.getRemoteUser();
+        }
+        String clientId = request.getHeader(CLIENT_HEADER);
+        if (clientId != null && trustedProxies.contains(request.getRemoteAddr())) {
+            return clientId;
+        }
+        return request.getRemoteAddr();
+    }
+}
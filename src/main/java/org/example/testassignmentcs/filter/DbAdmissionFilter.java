@@ -0,0 +1,122 @@
+package org.example.testassignmentcs.filter;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+@Component
+public class DbAdmissionFilter extends OncePerRequestFilter implements MeterBinder {
+    private static final String METRIC_PREFIX = "users.db.admission.";
+    private static final String USERS_PATH = "/users";
+
+    private final Semaphore permits;
+    private final long timeoutNanos;
+    private final long shedWaitNanos;
+    private final String retryAfterSeconds;
+    // moving average of the time requests spent waiting for a permit, i.e. for the pool
+    private final AtomicLong averageWaitNanos = new AtomicLong();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+
+    public DbAdmissionFilter(
+            @Value("${api.db_admission.permits}")
+            int permits,
+            @Value("${api.db_admission.timeout}")
+            Duration timeout,
+            @Value("${api.db_admission.shed_wait}")
+            Duration shedWait
+    ) {
+        // fair, so parked requests are admitted in arrival order instead of barging
+        this.permits = new Semaphore(permits, true);
+        this.timeoutNanos = timeout.toNanos();
+        this.shedWaitNanos = shedWait.toNanos();
+        this.retryAfterSeconds = String.valueOf(Math.max(1, timeout.toSeconds()));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(USERS_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain
+    ) throws ServletException, IOException {
+        long start = System.nanoTime();
+        boolean admitted = tryAcquire(0);
+        if (!admitted && averageWaitNanos.get() > shedWaitNanos) {
+            // the pool is already backed up, so the request is turned away at once instead of
+            // queueing; a shed request doesn't move the average, so it decays once permits free
+            shed.increment();
+            reject(response, HttpStatus.TOO_MANY_REQUESTS);
+            return;
+        }
+        if (!admitted) {
+            admitted = tryAcquire(timeoutNanos);
+        }
+        long waitNanos = System.nanoTime() - start;
+        averageWaitNanos.accumulateAndGet(waitNanos,
+                (average, wait) -> average + (wait - average) / 8);
+        if (!admitted) {
+            rejected.increment();
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE);
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder(METRIC_PREFIX + "available", permits, Semaphore::availablePermits)
+                .register(registry);
+        Gauge.builder(METRIC_PREFIX + "queued", permits, Semaphore::getQueueLength)
+                .register(registry);
+        Gauge.builder(METRIC_PREFIX + "wait", averageWaitNanos, AtomicLong::doubleValue)
+                .description("Moving average of the wait for a database permit")
+                .baseUnit("nanoseconds")
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + "rejected", rejected, LongAdder::doubleValue)
+                .description("Requests turned away after waiting for a database permit")
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + "shed", shed, LongAdder::doubleValue)
+                .description("Requests turned away at once because the pool wait was too long")
+                .register(registry);
+    }
+
+    private boolean tryAcquire(long timeoutNanos) {
+        // a timed tryAcquire keeps the fair order even with a zero timeout
+        try {
+            return permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status) {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+    }
+}
@@ -0,0 +1,163 @@
+package org.example.testassignmentcs.filter;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+// runs before DbAdmissionFilter, so a limited client never holds a database permit
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+public class RateLimitFilter extends OncePerRequestFilter implements MeterBinder {
+    private static final String METRIC_PREFIX = "users.rate_limit.";
+    private static final String USERS_PATH = "/users";
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final ClientResolver clientResolver;
+    private final Budget reads;
+    private final Budget writes;
+    private final long maximumClients;
+    // a plain map rather than a cache: an expiring cache reads the clock and reorders its
+    // entries on every hit, which cost more than the limiter itself
+    private final Map<String, ClientBuckets> clients = new ConcurrentHashMap<>();
+    // shared by the clients that arrive while the map is full, so new addresses can't grow it
+    private final ClientBuckets overflow = new ClientBuckets();
+    private final LongAdder limitedReads = new LongAdder();
+    private final LongAdder limitedWrites = new LongAdder();
+
+    public RateLimitFilter(
+            ClientResolver clientResolver,
+            @Value("${api.rate_limit.read_rate}")
+            double readRate,
+            @Value("${api.rate_limit.read_burst}")
+            int readBurst,
+            @Value("${api.rate_limit.write_rate}")
+            double writeRate,
+            @Value("${api.rate_limit.write_burst}")
+            int writeBurst,
+            @Value("${api.rate_limit.clients}")
+            long maximumClients
+    ) {
+        this.clientResolver = clientResolver;
+        this.reads = new Budget(readRate, readBurst);
+        this.writes = new Budget(writeRate, writeBurst);
+        this.maximumClients = maximumClients;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(USERS_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain
+    ) throws ServletException, IOException {
+        boolean read = HttpMethod.GET.matches(request.getMethod())
+                || HttpMethod.HEAD.matches(request.getMethod());
+        ClientBuckets buckets = buckets(clientResolver.clientOf(request));
+        long waitNanos = read
+                ? reads.acquire(buckets.reads, System.nanoTime())
+                : writes.acquire(buckets.writes, System.nanoTime());
+        if (waitNanos > 0) {
+            (read ? limitedReads : limitedWrites).increment();
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER,
+                    String.valueOf((waitNanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND));
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    @Scheduled(
+            initialDelayString = "${api.rate_limit.sweep_interval}",
+            fixedDelayString = "${api.rate_limit.sweep_interval}"
+    )
+    public void sweep() {
+        // a full bucket is what a new client gets anyway, so dropping it loses nothing
+        long now = System.nanoTime();
+        clients.values().removeIf(buckets -> buckets.isFull(now));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder(METRIC_PREFIX + "clients", clients, Map::size)
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + "limited", limitedReads, LongAdder::doubleValue)
+                .description("Requests turned away because the client ran out of tokens")
+                .tag("kind", "read")
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + "limited", limitedWrites, LongAdder::doubleValue)
+                .description("Requests turned away because the client ran out of tokens")
+                .tag("kind", "write")
+                .register(registry);
+    }
+
+    private ClientBuckets buckets(String clientId) {
+        ClientBuckets buckets = clients.get(clientId);
+        if (buckets != null) {
+            return buckets;
+        }
+        if (clients.size() >= maximumClients) {
+            return overflow;
+        }
+        return clients.computeIfAbsent(clientId, client -> new ClientBuckets());
+    }
+
+    // a token bucket kept as one timestamp (GCRA): the time at which the bucket would be full
+    // again, advanced by one interval per request with a CAS, so no request ever takes a lock
+    private static final class Budget {
+        private final long interval;
+        private final long limit;
+
+        private Budget(double ratePerSecond, int burst) {
+            this.interval = (long) (NANOS_PER_SECOND / ratePerSecond);
+            this.limit = interval * burst;
+        }
+
+        private long acquire(AtomicLong fullAt, long now) {
+            while (true) {
+                long current = fullAt.get();
+                long next = Math.max(current, now) + interval;
+                long waitNanos = next - now - limit;
+                if (waitNanos > 0) {
+                    return waitNanos;
+                }
+                if (fullAt.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+
+    private static final class ClientBuckets {
+        // MIN_VALUE, because System.nanoTime() may be negative
+        private final AtomicLong reads = new AtomicLong(Long.MIN_VALUE);
+        private final AtomicLong writes = new AtomicLong(Long.MIN_VALUE);
+
+        private boolean isFull(long now) {
+            return reads.get() <= now && writes.get() <= now;
+        }
+    }
+}
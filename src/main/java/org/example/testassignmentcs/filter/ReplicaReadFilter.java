@@ -0,0 +1,96 @@
+package org.example.testassignmentcs.filter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import org.example.testassignmentcs.config.ReadWriteRoutingDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+@Component
+public class ReplicaReadFilter extends OncePerRequestFilter {
+    // set on requests served by replicas, to the time they may lag behind the primary
+    public static final String REPLICA_LAG_ATTRIBUTE = ReplicaReadFilter.class.getName() + ".LAG";
+    private static final String USERS_PATH = "/users";
+    private static final String PRIMARY_UNTIL_COOKIE = "users_primary_until";
+
+    private final boolean enabled;
+    private final Duration replicaLag;
+    private final boolean readYourWrites;
+
+    public ReplicaReadFilter(
+            @Value("${api.datasource.replica_urls}")
+            List<String> replicaUrls,
+            @Value("${api.datasource.replica_lag}")
+            Duration replicaLag,
+            @Value("${api.datasource.read_your_writes}")
+            boolean readYourWrites
+    ) {
+        this.enabled = !replicaUrls.isEmpty();
+        this.replicaLag = replicaLag;
+        this.readYourWrites = readYourWrites;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !request.getRequestURI().startsWith(USERS_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain
+    ) throws ServletException, IOException {
+        boolean read = HttpMethod.GET.matches(request.getMethod())
+                || HttpMethod.HEAD.matches(request.getMethod());
+        if (!read || readYourWrites && wroteRecently(request)) {
+            if (!read && readYourWrites) {
+                // set before the chain runs, a streamed response is committed once it returns
+                response.addCookie(primaryUntil());
+            }
+            filterChain.doFilter(request, response);
+            return;
+        }
+        request.setAttribute(REPLICA_LAG_ATTRIBUTE, replicaLag);
+        ReadWriteRoutingDataSource.setReplicaReads(true);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReadWriteRoutingDataSource.setReplicaReads(false);
+        }
+    }
+
+    private Cookie primaryUntil() {
+        Cookie cookie = new Cookie(PRIMARY_UNTIL_COOKIE,
+                String.valueOf(System.currentTimeMillis() + replicaLag.toMillis()));
+        cookie.setPath(USERS_PATH);
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge((int) Math.max(1, replicaLag.toSeconds() + 1));
+        return cookie;
+    }
+
+    private static boolean wroteRecently(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return false;
+        }
+        for (Cookie cookie : cookies) {
+            if (PRIMARY_UNTIL_COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue()) > System.currentTimeMillis();
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+}
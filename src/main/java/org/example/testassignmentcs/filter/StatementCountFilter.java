@@ -0,0 +1,66 @@
+package org.example.testassignmentcs.filter;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+@Component
+public class StatementCountFilter extends OncePerRequestFilter
+        implements StatementInspector, HibernatePropertiesCustomizer {
+    private static final String METRIC_NAME = "users.request.statements";
+    private static final String URI_TAG = "uri";
+    private static final String UNKNOWN_URI = "UNKNOWN";
+
+    private final ThreadLocal<int[]> statements = new ThreadLocal<>();
+    private final MeterRegistry registry;
+
+    public StatementCountFilter(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+    }
+
+    @Override
+    public String inspect(String sql) {
+        int[] count = statements.get();
+        if (count != null) {
+            count[0]++;
+        }
+        return sql;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain
+    ) throws ServletException, IOException {
+        int[] count = new int[1];
+        statements.set(count);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            statements.remove();
+            Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            DistributionSummary.builder(METRIC_NAME)
+                    .description("Hibernate statements prepared while serving a request")
+                    .tag(URI_TAG, uri == null ? UNKNOWN_URI : uri.toString())
+                    .register(registry)
+                    .record(count[0]);
+        }
+    }
+}
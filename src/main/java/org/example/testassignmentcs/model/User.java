@@ -2,23 +2,33 @@ package org.example.testassignmentcs.model;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import java.time.LocalDate;
 import lombok.Data;
 import lombok.experimental.Accessors;
+import org.hibernate.annotations.DynamicUpdate;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users",
+        uniqueConstraints = @UniqueConstraint(
+                name = User.EMAIL_CONSTRAINT, columnNames = "email"),
+        indexes = @Index(
+                name = "idx_users_birth_date_id", columnList = "birth_date, id"))
+@DynamicUpdate
 @Data
 @Accessors(chain = true)
 public class User {
+    public static final String EMAIL_CONSTRAINT = "uk_users_email";
+    public static final String ID_TABLE = "users_seq";
+
+    // always assigned by UserIdAllocator, which encodes the shard into it, so a user persisted
+    // without one fails instead of getting an id of no shard
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
-    @Column(unique = true, nullable = false)
+    @Column(nullable = false)
     private String email;
     @Column(nullable = false, name = "first_name")
     private String firstName;
@@ -0,0 +1,21 @@
+package org.example.testassignmentcs.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+// the email directory of a sharded setup: every email has its row on the shard its hash
+// points to, whichever shard the user lives on, so one primary key keeps emails unique
+@Entity
+@Table(name = "user_emails")
+@Data
+@Accessors(chain = true)
+public class UserEmail {
+    @Id
+    private String email;
+    @Column(nullable = false, name = "user_id")
+    private Long userId;
+}
@@ -0,0 +1,20 @@
+package org.example.testassignmentcs.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+// the one-row counter UserIdAllocator takes its id blocks from, a table rather than a sequence
+// so H2 and MySQL share it; mapped only so the schema is created with the others
+@Entity
+@Table(name = User.ID_TABLE)
+@Data
+@Accessors(chain = true)
+public class UserIdCounter {
+    @Id
+    @Column(name = "next_val")
+    private Long nextVal;
+}
@@ -0,0 +1,263 @@
+package org.example.testassignmentcs.repository;
+
+import io.micrometer.core.annotation.Timed;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import lombok.RequiredArgsConstructor;
+import org.example.testassignmentcs.model.User;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+@RequiredArgsConstructor
+@Timed("users.jdbc.repository")
+public class UserJdbcRepository {
+    private static final String EMAILS_PARAMETER = "emails";
+    private static final String IDS_PARAMETER = "ids";
+    private static final String FROM_PARAMETER = "from";
+    private static final String TO_PARAMETER = "to";
+    private static final String LIMIT_PARAMETER = "limit";
+    private static final String SELECT_REGISTERED_EMAILS_SQL
+            = "SELECT email FROM users WHERE email IN (:" + EMAILS_PARAMETER + ")";
+    private static final String SELECT_CLAIMED_EMAILS_SQL
+            = "SELECT email FROM user_emails WHERE email IN (:" + EMAILS_PARAMETER + ")";
+    private static final String SELECT_EMAILS_SQL = "SELECT email FROM users";
+    private static final String SELECT_EMAILS_BY_IDS_SQL
+            = "SELECT id, email FROM users WHERE id IN (:" + IDS_PARAMETER + ")";
+    private static final String SELECT_BIRTH_DATES_SQL = "SELECT id, birth_date FROM users";
+    private static final String SELECT_BIRTH_DATE_COUNTS_SQL
+            = "SELECT birth_date, COUNT(*) FROM users GROUP BY birth_date";
+    private static final String SELECT_BIRTH_DATES_FOR_UPDATE_SQL = "SELECT id, birth_date "
+            + "FROM users WHERE id IN (:" + IDS_PARAMETER + ") FOR UPDATE";
+    private static final String SELECT_IDS_BY_BIRTH_DATE_SQL = "SELECT id FROM users "
+            + "WHERE birth_date BETWEEN :" + FROM_PARAMETER + " AND :" + TO_PARAMETER
+            + " ORDER BY id LIMIT :" + LIMIT_PARAMETER;
+    private static final String PATCH_SQL = "UPDATE users SET email = COALESCE(?, email), "
+            + "first_name = COALESCE(?, first_name), last_name = COALESCE(?, last_name), "
+            + "birth_date = COALESCE(?, birth_date), address = COALESCE(?, address), "
+            + "phone_number = COALESCE(?, phone_number) WHERE id = ?";
+    private static final int[] PATCH_TYPES = {Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+            Types.DATE, Types.VARCHAR, Types.VARCHAR, Types.BIGINT};
+    private static final String DELETE_BY_IDS_SQL
+            = "DELETE FROM users WHERE id IN (:" + IDS_PARAMETER + ")";
+    private static final String INSERT_SQL = "INSERT INTO users "
+            + "(id, email, first_name, last_name, birth_date, address, phone_number) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String CLAIM_EMAIL_SQL
+            = "INSERT INTO user_emails (email, user_id) VALUES (?, ?)";
+    private static final String RELEASE_EMAIL_SQL
+            = "DELETE FROM user_emails WHERE email = ? AND user_id = ?";
+    private static final String ALLOCATE_IDS_SQL
+            = "UPDATE " + User.ID_TABLE + " SET next_val = next_val + ?";
+    private static final String SELECT_NEXT_ID_SQL = "SELECT next_val FROM " + User.ID_TABLE;
+    private static final String INSERT_NEXT_ID_SQL
+            = "INSERT INTO " + User.ID_TABLE + " (next_val) VALUES (?)";
+    private static final long FIRST_ID = 1;
+    private static final String UPDATE_SQL = "UPDATE users SET email = ?, first_name = ?, "
+            + "last_name = ?, birth_date = ?, address = ?, phone_number = ? WHERE id = ?";
+    // the old row read back from the update itself, so a replace learns the old birth date
+    // in one statement; OLD TABLE is a data change delta table, as in H2 and DB2
+    private static final String UPDATE_RETURNING_OLD_BIRTH_DATE_SQL
+            = "SELECT birth_date FROM OLD TABLE (" + UPDATE_SQL + ")";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final UserShards userShards;
+
+    public Set<String> findRegisteredEmails(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbcTemplate.queryForList(
+                SELECT_REGISTERED_EMAILS_SQL,
+                Map.of(EMAILS_PARAMETER, emails),
+                String.class
+        ));
+    }
+
+    // the email directory of a sharded setup, read on the emails' home shard
+    public Set<String> findClaimedEmails(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbcTemplate.queryForList(
+                SELECT_CLAIMED_EMAILS_SQL,
+                Map.of(EMAILS_PARAMETER, emails),
+                String.class
+        ));
+    }
+
+    public Map<Long, String> findEmails(Collection<Long> ids) {
+        Map<Long, String> emails = new HashMap<>();
+        if (ids.isEmpty()) {
+            return emails;
+        }
+        jdbcTemplate.query(SELECT_EMAILS_BY_IDS_SQL, Map.of(IDS_PARAMETER, ids),
+                (RowCallbackHandler) resultSet -> emails.put(
+                        resultSet.getLong(1), resultSet.getString(2)));
+        return emails;
+    }
+
+    // the scans below cover every shard, one after the other
+    public void forEachEmail(Consumer<String> consumer) {
+        userShards.forEach(shard -> jdbcTemplate.getJdbcTemplate().query(SELECT_EMAILS_SQL,
+                (RowCallbackHandler) resultSet -> consumer.accept(resultSet.getString(1))));
+    }
+
+    public void forEachBirthDate(BiConsumer<Long, LocalDate> consumer) {
+        userShards.forEach(shard -> jdbcTemplate.getJdbcTemplate().query(SELECT_BIRTH_DATES_SQL,
+                (RowCallbackHandler) resultSet -> consumer.accept(
+                        resultSet.getLong(1), resultSet.getDate(2).toLocalDate())));
+    }
+
+    public void forEachBirthDateCount(BiConsumer<LocalDate, Long> consumer) {
+        userShards.forEach(shard -> jdbcTemplate.getJdbcTemplate().query(
+                SELECT_BIRTH_DATE_COUNTS_SQL,
+                (RowCallbackHandler) resultSet -> consumer.accept(
+                        resultSet.getDate(1).toLocalDate(), resultSet.getLong(2))));
+    }
+
+    public Map<Long, LocalDate> findBirthDatesForUpdate(Collection<Long> ids) {
+        Map<Long, LocalDate> birthDates = new HashMap<>();
+        if (ids.isEmpty()) {
+            return birthDates;
+        }
+        jdbcTemplate.query(SELECT_BIRTH_DATES_FOR_UPDATE_SQL, Map.of(IDS_PARAMETER, ids),
+                (RowCallbackHandler) resultSet -> birthDates.put(
+                        resultSet.getLong(1), resultSet.getDate(2).toLocalDate()));
+        return birthDates;
+    }
+
+    public List<Long> findIdsByBirthDateBetween(LocalDate fromDate, LocalDate toDate, int limit) {
+        return jdbcTemplate.queryForList(
+                SELECT_IDS_BY_BIRTH_DATE_SQL,
+                Map.of(FROM_PARAMETER, fromDate, TO_PARAMETER, toDate, LIMIT_PARAMETER, limit),
+                Long.class
+        );
+    }
+
+    @Transactional
+    public int deleteAllById(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update(DELETE_BY_IDS_SQL, Map.of(IDS_PARAMETER, ids));
+    }
+
+    public int update(User user) {
+        return jdbcTemplate.getJdbcTemplate().update(UPDATE_SQL,
+                user.getEmail(),
+                user.getFirstName(),
+                user.getLastName(),
+                Date.valueOf(user.getBirthDate()),
+                user.getAddress(),
+                user.getPhoneNumber(),
+                user.getId());
+    }
+
+    // the birth date the user had before the update, or null when there is no such user
+    public LocalDate updateReturningOldBirthDate(User user) {
+        return jdbcTemplate.getJdbcTemplate().query(UPDATE_RETURNING_OLD_BIRTH_DATE_SQL,
+                resultSet -> resultSet.next() ? resultSet.getDate(1).toLocalDate() : null,
+                user.getEmail(),
+                user.getFirstName(),
+                user.getLastName(),
+                Date.valueOf(user.getBirthDate()),
+                user.getAddress(),
+                user.getPhoneNumber(),
+                user.getId());
+    }
+
+    @Transactional
+    public int[] patchAll(List<User> patches) {
+        List<Object[]> batchArgs = new ArrayList<>(patches.size());
+        for (User patch : patches) {
+            batchArgs.add(new Object[] {
+                    patch.getEmail(),
+                    patch.getFirstName(),
+                    patch.getLastName(),
+                    patch.getBirthDate() == null ? null : Date.valueOf(patch.getBirthDate()),
+                    patch.getAddress(),
+                    patch.getPhoneNumber(),
+                    patch.getId()
+            });
+        }
+        return jdbcTemplate.getJdbcTemplate().batchUpdate(PATCH_SQL, batchArgs, PATCH_TYPES);
+    }
+
+    // users come with their ids, so no generated keys are read back and the driver is free
+    // to rewrite the batch into multi-row INSERTs
+    @Transactional
+    public int[] insertAll(List<User> users) {
+        if (users.isEmpty()) {
+            return new int[0];
+        }
+        return jdbcTemplate.getJdbcTemplate().batchUpdate(INSERT_SQL,
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i)
+                            throws SQLException {
+                        User user = users.get(i);
+                        statement.setLong(1, user.getId());
+                        statement.setString(2, user.getEmail());
+                        statement.setString(3, user.getFirstName());
+                        statement.setString(4, user.getLastName());
+                        statement.setDate(5, Date.valueOf(user.getBirthDate()));
+                        statement.setString(6, user.getAddress());
+                        statement.setString(7, user.getPhoneNumber());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return users.size();
+                    }
+                });
+    }
+
+    // a duplicate email fails on the primary key, whichever shard holds the other user
+    @Transactional
+    public int[] claimEmails(List<User> users) {
+        List<Object[]> batchArgs = new ArrayList<>(users.size());
+        for (User user : users) {
+            batchArgs.add(new Object[] {user.getEmail(), user.getId()});
+        }
+        return jdbcTemplate.getJdbcTemplate().batchUpdate(CLAIM_EMAIL_SQL, batchArgs);
+    }
+
+    // only the owner's row is removed, so a release can't free an email claimed again since
+    @Transactional
+    public int[] releaseEmails(List<User> users) {
+        List<Object[]> batchArgs = new ArrayList<>(users.size());
+        for (User user : users) {
+            batchArgs.add(new Object[] {user.getEmail(), user.getId()});
+        }
+        return jdbcTemplate.getJdbcTemplate().batchUpdate(RELEASE_EMAIL_SQL, batchArgs);
+    }
+
+    // moves the id counter past count ids and returns the first of them; the row lock is held
+    // only until this short transaction ends. A schema created by Hibernate starts with no
+    // counter row, so the first block inserts it; migrated databases have theirs already
+    @Transactional
+    public long allocateIds(int count) {
+        if (jdbcTemplate.getJdbcTemplate().update(ALLOCATE_IDS_SQL, count) == 0) {
+            jdbcTemplate.getJdbcTemplate().update(INSERT_NEXT_ID_SQL, FIRST_ID + count);
+            return FIRST_ID;
+        }
+        return jdbcTemplate.getJdbcTemplate().queryForObject(SELECT_NEXT_ID_SQL, Long.class)
+                - count;
+    }
+}
@@ -1,19 +1,41 @@
 package org.example.testassignmentcs.repository;
 
+import jakarta.persistence.LockModeType;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 import org.example.testassignmentcs.model.User;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
     Optional<User> findByEmail(String email);
 
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<User> findForUpdateById(Long id);
+
     List<User> findAllByBirthDateBetween(
             LocalDate from,
             LocalDate to,
             Pageable pageable);
+
+    List<User> findAllByBirthDateBetweenOrderByBirthDateAscIdAsc(
+            LocalDate from,
+            LocalDate to,
+            Pageable pageable);
+
+    @Query("SELECT u FROM User u WHERE u.birthDate BETWEEN :from AND :to "
+            + "AND (u.birthDate > :lastBirthDate "
+            + "OR (u.birthDate = :lastBirthDate AND u.id > :lastId)) "
+            + "ORDER BY u.birthDate, u.id")
+    List<User> findAllByBirthDateBetweenAfter(
+            LocalDate from,
+            LocalDate to,
+            LocalDate lastBirthDate,
+            Long lastId,
+            Pageable pageable);
 }
@@ -0,0 +1,29 @@
+package org.example.testassignmentcs.repository;
+
+import jakarta.persistence.Tuple;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+import org.example.testassignmentcs.model.User;
+import org.springframework.data.domain.Pageable;
+
+public interface UserRepositoryCustom {
+    Stream<User> streamAllByBirthDateBetween(LocalDate from, LocalDate to, int fetchSize);
+
+    List<Tuple> findAllByBirthDateBetween(
+            LocalDate from,
+            LocalDate to,
+            List<String> fields,
+            Pageable pageable);
+
+    List<Tuple> findAllByBirthDateBetweenAfter(
+            LocalDate from,
+            LocalDate to,
+            LocalDate lastBirthDate,
+            Long lastId,
+            List<String> fields,
+            int limit);
+
+    List<Tuple> findAllByIdIn(Collection<Long> ids, List<String> fields);
+}
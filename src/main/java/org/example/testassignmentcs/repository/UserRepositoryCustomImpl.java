@@ -0,0 +1,115 @@
+package org.example.testassignmentcs.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+import org.example.testassignmentcs.model.User;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+    private static final String STREAM_BY_BIRTH_DATE_QUERY = "SELECT u FROM User u "
+            + "WHERE u.birthDate BETWEEN :from AND :to "
+            + "ORDER BY u.birthDate, u.id";
+    private static final String ID_ATTRIBUTE = "id";
+    private static final String BIRTH_DATE_ATTRIBUTE = "birthDate";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Stream<User> streamAllByBirthDateBetween(LocalDate from, LocalDate to, int fetchSize) {
+        return entityManager.createQuery(STREAM_BY_BIRTH_DATE_QUERY, User.class)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream()
+                .map(this::detach);
+    }
+
+    @Override
+    public List<Tuple> findAllByBirthDateBetween(
+            LocalDate from,
+            LocalDate to,
+            List<String> fields,
+            Pageable pageable
+    ) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<User> user = query.from(User.class);
+        query.multiselect(select(user, fields))
+                .where(builder.between(user.get(BIRTH_DATE_ATTRIBUTE), from, to))
+                .orderBy(QueryUtils.toOrders(pageable.getSort(), user, builder));
+        return entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+    }
+
+    @Override
+    public List<Tuple> findAllByBirthDateBetweenAfter(
+            LocalDate from,
+            LocalDate to,
+            LocalDate lastBirthDate,
+            Long lastId,
+            List<String> fields,
+            int limit
+    ) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<User> user = query.from(User.class);
+        Path<LocalDate> birthDate = user.get(BIRTH_DATE_ATTRIBUTE);
+        Path<Long> id = user.get(ID_ATTRIBUTE);
+        Predicate range = builder.between(birthDate, from, to);
+        if (lastBirthDate != null) {
+            range = builder.and(range, builder.or(
+                    builder.greaterThan(birthDate, lastBirthDate),
+                    builder.and(builder.equal(birthDate, lastBirthDate),
+                            builder.greaterThan(id, lastId))));
+        }
+        query.multiselect(select(user, fields))
+                .where(range)
+                .orderBy(builder.asc(birthDate), builder.asc(id));
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public List<Tuple> findAllByIdIn(Collection<Long> ids, List<String> fields) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<User> user = query.from(User.class);
+        query.multiselect(select(user, fields))
+                .where(user.get(ID_ATTRIBUTE).in(ids));
+        return entityManager.createQuery(query)
+                .getResultList();
+    }
+
+    private User detach(User user) {
+        entityManager.detach(user);
+        return user;
+    }
+
+    private static List<Selection<?>> select(Root<User> user, List<String> fields) {
+        // scalar columns only: no entity is hydrated or kept in the persistence context
+        return fields.stream()
+                .<Selection<?>>map(field -> user.get(field).alias(field))
+                .toList();
+    }
+}
@@ -0,0 +1,275 @@
+package org.example.testassignmentcs.repository;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import org.example.testassignmentcs.config.ReadWriteRoutingDataSource;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.relational.SchemaManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// users live on the shard their id points to: ids are handed out per shard as
+// local id * shard count + shard, and a new user goes to the home shard of its email, where
+// the email directory row is written in the same transaction
+@Component
+public class UserShards {
+    // the order the shards' rows are merged in, and the tie-break of any other sort
+    public static final Sort KEY_ORDER = Sort.by("birthDate", "id");
+    private static final Set<String> CREATE_ACTIONS = Set.of("create", "create-drop");
+    private static final String THREAD_PREFIX = "user-shards-";
+
+    private final int count;
+    private final EntityManagerFactory entityManagerFactory;
+    private final TransactionTemplate readTemplate;
+    private final TransactionTemplate writeTemplate;
+    private final ExecutorService executor;
+
+    public UserShards(
+            @Value("${api.datasource.shard_urls}")
+            List<String> shardUrls,
+            @Value("${api.db_admission.permits}")
+            int permits,
+            PlatformTransactionManager transactionManager,
+            EntityManagerFactory entityManagerFactory
+    ) {
+        this.count = shardUrls.size() + 1;
+        this.entityManagerFactory = entityManagerFactory;
+        this.readTemplate = new TransactionTemplate(transactionManager);
+        readTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        readTemplate.setReadOnly(true);
+        this.writeTemplate = new TransactionTemplate(transactionManager);
+        writeTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        // every admitted request may read all shards at once; past that the caller reads
+        // its shards itself, which slows it down instead of queueing behind the others
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(THREAD_PREFIX);
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(0, Math.max(1, permits * (count - 1)),
+                1, TimeUnit.MINUTES, new SynchronousQueue<>(), threadFactory,
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        if (isSharded()) {
+            createSchemas();
+        }
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public boolean isSharded() {
+        return count > 1;
+    }
+
+    public int shardOf(long id) {
+        return Math.floorMod(id, count);
+    }
+
+    public long id(int shard, long localId) {
+        return localId * count + shard;
+    }
+
+    // case variants share a shard, so a case-insensitive collation still sees them collide
+    public int homeOf(String email) {
+        return Math.floorMod(email.toLowerCase(Locale.ROOT).hashCode(), count);
+    }
+
+    public <T> Map<Integer, List<T>> group(Collection<T> items, ToIntFunction<T> shardOf) {
+        Map<Integer, List<T>> groups = new TreeMap<>();
+        for (T item : items) {
+            groups.computeIfAbsent(shardOf.applyAsInt(item), shard -> new ArrayList<>())
+                    .add(item);
+        }
+        return groups;
+    }
+
+    // a transaction of its own, as one already running is bound to another shard's connection;
+    // without shards the work simply joins the caller's
+    public <T> T read(int shard, Supplier<T> work) {
+        return inShard(shard, readTemplate, work);
+    }
+
+    public <T> T write(int shard, Supplier<T> work) {
+        return inShard(shard, writeTemplate, work);
+    }
+
+    public void forEach(IntConsumer work) {
+        for (int shard = 0; shard < count; shard++) {
+            int current = shard;
+            read(shard, () -> {
+                work.accept(current);
+                return null;
+            });
+        }
+    }
+
+    // results come in shard order; the calling thread reads the first shard itself
+    public <T> List<T> fanOut(IntFunction<T> query) {
+        if (!isSharded()) {
+            List<T> results = new ArrayList<>(1);
+            results.add(query.apply(0));
+            return results;
+        }
+        List<Future<T>> futures = new ArrayList<>(count - 1);
+        for (int shard = 1; shard < count; shard++) {
+            int current = shard;
+            futures.add(executor.submit(() -> read(current, () -> query.apply(current))));
+        }
+        List<T> results = new ArrayList<>(count);
+        try {
+            results.add(read(0, () -> query.apply(0)));
+            for (Future<T> future : futures) {
+                results.add(join(future));
+            }
+        } catch (RuntimeException | Error e) {
+            // the request has failed, so the other shards' reads are not left to hold their
+            // connections and executor threads until they finish
+            futures.forEach(future -> future.cancel(true));
+            throw e;
+        }
+        return results;
+    }
+
+    public <T> List<T> findFirst(int limit, Supplier<List<T>> query, Comparator<T> order) {
+        if (!isSharded()) {
+            return query.get();
+        }
+        return merge(fanOut(shard -> query.get()), order, 0, limit);
+    }
+
+    // a shard can't know which of its rows the others push off the page, so each returns all
+    // rows up to the end of the page; deep offsets get expensive, cursors stay cheap
+    public <T> List<T> findPage(
+            Pageable pageable,
+            Function<Pageable, List<T>> query,
+            Function<Sort, Comparator<T>> order
+    ) {
+        if (!isSharded()) {
+            return query.apply(pageable);
+        }
+        Sort sort = pageable.getSort().and(KEY_ORDER);
+        Pageable head = PageRequest.of(0, (int) Math.min(Integer.MAX_VALUE,
+                pageable.getOffset() + pageable.getPageSize()), sort);
+        return merge(fanOut(shard -> query.apply(head)), order.apply(sort),
+                pageable.getOffset(), pageable.getPageSize());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // each property is resolved to its getter once, so comparing rows only calls the getters
+    @SuppressWarnings("unchecked")
+    public static <T> Comparator<T> comparator(
+            Sort sort,
+            Function<String, Function<T, ?>> getters
+    ) {
+        Comparator<T> comparator = (left, right) -> 0;
+        for (Sort.Order order : sort) {
+            Function<T, ?> getter = getters.apply(order.getProperty());
+            Comparator<T> byProperty = Comparator.comparing(
+                    row -> (Comparable<Object>) getter.apply(row),
+                    Comparator.nullsFirst(Comparator.naturalOrder()));
+            comparator = comparator.thenComparing(
+                    order.isAscending() ? byProperty : byProperty.reversed());
+        }
+        return comparator;
+    }
+
+    private <T> T inShard(int shard, TransactionTemplate template, Supplier<T> work) {
+        if (!isSharded()) {
+            return work.get();
+        }
+        // a running transaction is suspended along with its EntityManager, but the request's
+        // open-in-view one would hold on to the first shard's connection, so it is set aside
+        Object requestEntityManager = TransactionSynchronizationManager.isActualTransactionActive()
+                ? null : TransactionSynchronizationManager.unbindResourceIfPossible(
+                        entityManagerFactory);
+        try {
+            return ReadWriteRoutingDataSource.onShard(shard,
+                    () -> template.execute(status -> work.get()));
+        } finally {
+            if (requestEntityManager != null) {
+                TransactionSynchronizationManager.bindResource(
+                        entityManagerFactory, requestEntityManager);
+            }
+        }
+    }
+
+    // Hibernate creates its schema on the first shard only; the others get the same one here,
+    // before anything can read them
+    private void createSchemas() {
+        Object action = entityManagerFactory.getProperties().get(AvailableSettings.HBM2DDL_AUTO);
+        if (!CREATE_ACTIONS.contains(String.valueOf(action))) {
+            return;
+        }
+        SchemaManager schemaManager
+                = entityManagerFactory.unwrap(SessionFactory.class).getSchemaManager();
+        for (int shard = 1; shard < count; shard++) {
+            ReadWriteRoutingDataSource.onShard(shard, () -> {
+                schemaManager.dropMappedObjects(false);
+                schemaManager.exportMappedObjects(false);
+                return null;
+            });
+        }
+    }
+
+    private static <T> List<T> merge(
+            List<List<T>> pages,
+            Comparator<T> order,
+            long skip,
+            int limit
+    ) {
+        // every page is sorted already and the sort merges such runs in linear passes
+        List<T> rows = new ArrayList<>();
+        pages.forEach(rows::addAll);
+        rows.sort(order);
+        int from = (int) Math.min(skip, rows.size());
+        int to = (int) Math.min(rows.size(), from + (long) limit);
+        return rows.subList(from, to);
+    }
+
+    private static <T> T join(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.example.testassignmentcs.service;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import lombok.RequiredArgsConstructor;
+import org.example.testassignmentcs.repository.UserJdbcRepository;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@Component
+@RequiredArgsConstructor
+public class BirthDateHistogram implements SmartInitializingSingleton {
+    private static final int AGE_BUCKET_WIDTH = 10;
+    private static final int UNDER_AGE_BUCKET = -1;
+
+    private final UserJdbcRepository userJdbcRepository;
+    // one counter per distinct birth date, so reads cost the same for any number of users
+    private final NavigableMap<LocalDate, LongAdder> counts = new ConcurrentSkipListMap<>();
+    private final NavigableMap<Integer, LongAdder> yearCounts = new ConcurrentSkipListMap<>();
+    // writes share the lock and a rebuild of the age buckets takes it alone, so every write is
+    // counted either by the rebuild or by the buckets it publishes
+    private final ReadWriteLock bucketsLock = new ReentrantReadWriteLock();
+    private volatile AgeBuckets ageBuckets;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        // counts are not idempotent like the index and the email filter, so they are loaded
+        // before the web server starts and no write can happen during the scan
+        userJdbcRepository.forEachBirthDateCount(this::count);
+    }
+
+    public void add(LocalDate birthDate) {
+        afterCommit(() -> count(birthDate, 1));
+    }
+
+    public void remove(LocalDate birthDate) {
+        afterCommit(() -> count(birthDate, -1));
+    }
+
+    public void move(LocalDate oldBirthDate, LocalDate newBirthDate) {
+        if (!oldBirthDate.equals(newBirthDate)) {
+            afterCommit(() -> {
+                count(oldBirthDate, -1);
+                count(newBirthDate, 1);
+            });
+        }
+    }
+
+    public SortedMap<Integer, Long> birthYears() {
+        return sums(yearCounts);
+    }
+
+    // ages change only with the day, so the buckets are counted once a day and then kept up
+    // by the writes
+    public Map<String, Long> ageBuckets(LocalDate today, int adultAge) {
+        AgeBuckets buckets = ageBuckets;
+        if (buckets == null || !buckets.today().equals(today) || buckets.adultAge() != adultAge) {
+            buckets = rebuildAgeBuckets(today, adultAge);
+        }
+        Map<String, Long> labelledBuckets = new LinkedHashMap<>();
+        sums(buckets.counts()).forEach((bucket, count) ->
+                labelledBuckets.put(label(bucket, adultAge), count));
+        return labelledBuckets;
+    }
+
+    private void count(LocalDate birthDate, long delta) {
+        bucketsLock.readLock().lock();
+        try {
+            counts.computeIfAbsent(birthDate, key -> new LongAdder()).add(delta);
+            yearCounts.computeIfAbsent(birthDate.getYear(), key -> new LongAdder()).add(delta);
+            AgeBuckets buckets = ageBuckets;
+            if (buckets != null) {
+                buckets.counts().computeIfAbsent(
+                        bucket(birthDate, buckets.today(), buckets.adultAge()),
+                        key -> new LongAdder()
+                ).add(delta);
+            }
+        } finally {
+            bucketsLock.readLock().unlock();
+        }
+    }
+
+    private AgeBuckets rebuildAgeBuckets(LocalDate today, int adultAge) {
+        bucketsLock.writeLock().lock();
+        try {
+            AgeBuckets buckets = ageBuckets;
+            if (buckets != null && buckets.today().equals(today)
+                    && buckets.adultAge() == adultAge) {
+                return buckets;
+            }
+            Map<Integer, LongAdder> bucketCounts = new ConcurrentHashMap<>();
+            counts.forEach((birthDate, counter) -> bucketCounts.computeIfAbsent(
+                    bucket(birthDate, today, adultAge), key -> new LongAdder()
+            ).add(counter.sum()));
+            buckets = new AgeBuckets(today, adultAge, bucketCounts);
+            ageBuckets = buckets;
+            return buckets;
+        } finally {
+            bucketsLock.writeLock().unlock();
+        }
+    }
+
+    // counts have no version to reconcile against, so a write inside a transaction is counted
+    // only once it commits and a rollback leaves them as they were
+    private static void afterCommit(Runnable count) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            count.run();
+                        }
+                    });
+        } else {
+            count.run();
+        }
+    }
+
+    private static SortedMap<Integer, Long> sums(Map<Integer, LongAdder> counters) {
+        SortedMap<Integer, Long> sums = new TreeMap<>();
+        counters.forEach((key, counter) -> {
+            long count = counter.sum();
+            if (count > 0) {
+                sums.put(key, count);
+            }
+        });
+        return sums;
+    }
+
+    private static int bucket(LocalDate birthDate, LocalDate today, int adultAge) {
+        int age = Period.between(birthDate, today).getYears();
+        return age < adultAge ? UNDER_AGE_BUCKET : (age - adultAge) / AGE_BUCKET_WIDTH;
+    }
+
+    private static String label(int bucket, int adultAge) {
+        if (bucket == UNDER_AGE_BUCKET) {
+            return "0-" + (adultAge - 1);
+        }
+        int from = adultAge + bucket * AGE_BUCKET_WIDTH;
+        return from + "-" + (from + AGE_BUCKET_WIDTH - 1);
+    }
+
+    private record AgeBuckets(LocalDate today, int adultAge, Map<Integer, LongAdder> counts) {
+    }
+}
@@ -0,0 +1,498 @@
+package org.example.testassignmentcs.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.example.testassignmentcs.model.User;
+import org.example.testassignmentcs.repository.UserJdbcRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@Component
+public class BirthDateIndex implements MeterBinder {
+    private static final String METRIC_PREFIX = "users.birth_date.index.";
+    private static final int ID_BITS = 40;
+    private static final long ID_MASK = (1L << ID_BITS) - 1;
+    private static final long DAY_OFFSET = 1L << 22;
+    private static final String ID_EXCEPTION_MESSAGE = "Id doesn`t fit the birth date index: ";
+    // keys per block: a write copies one block and the block table, so both stay small
+    private static final int BLOCK_SIZE = 1024;
+    private static final long[] NO_KEYS = new long[0];
+
+    private final UserJdbcRepository userJdbcRepository;
+    private final boolean enabled;
+    // sorted (epoch day, id) pairs packed into one long each, in the same order as the keyset
+    // pagination, cut into blocks; a write replaces only the blocks it touches and publishes a
+    // new table, so readers never need a lock
+    private volatile Blocks blocks = Blocks.EMPTY;
+    // the key of every indexed id and the version of the write behind it, guarded by this
+    // monitor; loaded rows have version 0
+    private final IdTable entries = new IdTable();
+    private volatile boolean ready;
+    private final AtomicLong clock = new AtomicLong();
+    private final LongAdder copiedBytes = new LongAdder();
+
+    public BirthDateIndex(
+            UserJdbcRepository userJdbcRepository,
+            @Value("${api.birth_date_index.enabled}")
+            boolean enabled
+    ) {
+        this.userJdbcRepository = userJdbcRepository;
+        this.enabled = enabled;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public List<Long> findIds(LocalDate fromDate, LocalDate toDate, long offset, int limit) {
+        Blocks snapshot = blocks;
+        int from = lowerBound(snapshot, key(fromDate, 0));
+        int to = lowerBound(snapshot, key(toDate.plusDays(1), 0));
+        return ids(snapshot, (int) Math.min(from + offset, to), to, limit);
+    }
+
+    public List<Long> findIdsAfter(
+            LocalDate fromDate,
+            LocalDate toDate,
+            LocalDate lastBirthDate,
+            long lastId,
+            int limit
+    ) {
+        Blocks snapshot = blocks;
+        int from = Math.max(lowerBound(snapshot, key(fromDate, 0)),
+                lowerBound(snapshot, key(lastBirthDate, lastId) + 1));
+        int to = lowerBound(snapshot, key(toDate.plusDays(1), 0));
+        return ids(snapshot, Math.min(from, to), to, limit);
+    }
+
+    public synchronized LocalDate findBirthDate(Long id) {
+        int slot = entries.find(id);
+        return slot < 0 ? null : birthDate(entries.key(slot));
+    }
+
+    // called before the insert commits, while the new rows are still locked, so no later write
+    // of them can reach the index first; a rollback takes them out again
+    public void add(Collection<User> users) {
+        if (!enabled || users.isEmpty()) {
+            return;
+        }
+        addUsers(users, clock.incrementAndGet());
+        afterCompletion(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    removeIds(users.stream().mapToLong(User::getId).toArray());
+                }
+            }
+        });
+    }
+
+    // called while the writer holds the row lock, so versions follow the commit order of the
+    // user's writes; the move is applied after the commit unless a later write got there first,
+    // and never brings back a user deleted meanwhile
+    public void put(Long id, LocalDate birthDate) {
+        if (!enabled) {
+            return;
+        }
+        long version = clock.incrementAndGet();
+        afterCompletion(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    move(id, key(birthDate, id), version);
+                }
+            }
+        });
+    }
+
+    public void remove(Collection<Long> ids) {
+        if (!enabled || ids.isEmpty()) {
+            return;
+        }
+        long[] removedIds = ids.stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+        afterCompletion(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    removeIds(removedIds);
+                }
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load() {
+        if (!enabled) {
+            return;
+        }
+        // writes wait on this monitor and are applied afterwards, so rows committed while the
+        // scan runs are never lost; entries written before the scan are newer than its rows
+        long[][] buffer = {new long[1024]};
+        int[] size = {0};
+        userJdbcRepository.forEachBirthDate((id, birthDate) -> {
+            if (entries.find(id) >= 0) {
+                return;
+            }
+            if (size[0] == buffer[0].length) {
+                buffer[0] = Arrays.copyOf(buffer[0], size[0] * 2);
+            }
+            long key = key(birthDate, id);
+            entries.put(id, key, 0);
+            buffer[0][size[0]++] = key;
+        });
+        long[] loaded = Arrays.copyOf(buffer[0], size[0]);
+        Arrays.sort(loaded);
+        update(loaded, NO_KEYS);
+        ready = true;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder(METRIC_PREFIX + "size", this, index -> index.blocks.size())
+                .register(registry);
+        Gauge.builder(METRIC_PREFIX + "memory", this, index -> index.memoryBytes())
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + "copied", copiedBytes, LongAdder::doubleValue)
+                .description("Bytes copied by writes: the blocks they touch and the block table")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    // the keys with a reference and a start per block, and the id table; read without the
+    // monitor, so a scrape never waits for the load
+    public long memoryBytes() {
+        Blocks snapshot = blocks;
+        return (long) snapshot.size() * Long.BYTES
+                + (long) snapshot.keys().length * Long.BYTES
+                + entries.memoryBytes();
+    }
+
+    public long copiedBytes() {
+        return copiedBytes.sum();
+    }
+
+    private synchronized void addUsers(Collection<User> users, long version) {
+        long[] added = new long[users.size()];
+        long[] replaced = new long[users.size()];
+        int size = 0;
+        int replacedSize = 0;
+        for (User user : users) {
+            long key = key(user.getBirthDate(), user.getId());
+            int slot = entries.find(user.getId());
+            if (slot >= 0) {
+                replaced[replacedSize++] = entries.key(slot);
+            }
+            entries.put(user.getId(), key, version);
+            added[size++] = key;
+        }
+        Arrays.sort(added);
+        long[] removed = Arrays.copyOf(replaced, replacedSize);
+        Arrays.sort(removed);
+        update(added, removed);
+    }
+
+    private synchronized void move(long id, long key, long version) {
+        int slot = entries.find(id);
+        if (slot < 0 || entries.version(slot) >= version) {
+            return;
+        }
+        long oldKey = entries.key(slot);
+        entries.set(slot, key, version);
+        if (oldKey != key) {
+            update(new long[] {key}, new long[] {oldKey});
+        }
+    }
+
+    private synchronized void removeIds(long[] ids) {
+        long[] removed = new long[ids.length];
+        int size = 0;
+        for (long id : ids) {
+            int slot = entries.find(id);
+            if (slot >= 0) {
+                removed[size++] = entries.key(slot);
+                entries.remove(slot);
+            }
+        }
+        if (size == 0) {
+            return;
+        }
+        removed = Arrays.copyOf(removed, size);
+        Arrays.sort(removed);
+        update(NO_KEYS, removed);
+    }
+
+    // merges the sorted added keys and drops the sorted removed ones; blocks neither touches
+    // are shared with the previous table
+    private void update(long[] added, long[] removed) {
+        long[][] current = blocks.keys();
+        List<long[]> updated = new ArrayList<>(current.length + added.length / BLOCK_SIZE + 1);
+        long copied = 0;
+        if (current.length == 0) {
+            copied += append(updated, added);
+        }
+        int nextAdded = 0;
+        int nextRemoved = 0;
+        for (int i = 0; i < current.length; i++) {
+            // a block takes the keys below the first key of the next one
+            long limit = i + 1 < current.length ? current[i + 1][0] : Long.MAX_VALUE;
+            int addedEnd = lowerBound(added, nextAdded, limit);
+            int removedEnd = lowerBound(removed, nextRemoved, limit);
+            if (addedEnd == nextAdded && removedEnd == nextRemoved) {
+                updated.add(current[i]);
+                continue;
+            }
+            copied += append(updated, merge(current[i], added, nextAdded, addedEnd,
+                    removed, nextRemoved, removedEnd));
+            nextAdded = addedEnd;
+            nextRemoved = removedEnd;
+        }
+        blocks = Blocks.of(updated);
+        copiedBytes.add(copied + (long) updated.size() * Long.BYTES);
+    }
+
+    // a block grown past BLOCK_SIZE is split evenly, and a small one is folded into the
+    // previous block, as deletes leave them behind
+    private static long append(List<long[]> blocks, long[] keys) {
+        long copied = 0;
+        int pieces = Math.max(1, (keys.length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        for (int piece = 0; piece < pieces; piece++) {
+            long[] block = pieces == 1 ? keys : Arrays.copyOfRange(keys,
+                    (int) ((long) keys.length * piece / pieces),
+                    (int) ((long) keys.length * (piece + 1) / pieces));
+            if (block.length == 0) {
+                continue;
+            }
+            if (block.length < BLOCK_SIZE / 4 && !blocks.isEmpty()
+                    && blocks.getLast().length + block.length <= BLOCK_SIZE) {
+                long[] previous = blocks.removeLast();
+                long[] joined = Arrays.copyOf(previous, previous.length + block.length);
+                System.arraycopy(block, 0, joined, previous.length, block.length);
+                block = joined;
+            }
+            blocks.add(block);
+            copied += (long) block.length * Long.BYTES;
+        }
+        return copied;
+    }
+
+    private static long[] merge(
+            long[] block,
+            long[] added,
+            int addedFrom,
+            int addedTo,
+            long[] removed,
+            int removedFrom,
+            int removedTo
+    ) {
+        long[] merged = new long[block.length + addedTo - addedFrom];
+        int size = 0;
+        int left = 0;
+        int right = addedFrom;
+        int skipped = removedFrom;
+        while (left < block.length || right < addedTo) {
+            long key = right == addedTo || left < block.length && block[left] < added[right]
+                    ? block[left++] : added[right++];
+            while (skipped < removedTo && removed[skipped] < key) {
+                skipped++;
+            }
+            if (skipped < removedTo && removed[skipped] == key) {
+                skipped++;
+            } else {
+                merged[size++] = key;
+            }
+        }
+        return size == merged.length ? merged : Arrays.copyOf(merged, size);
+    }
+
+    private static void afterCompletion(TransactionSynchronization synchronization) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(synchronization);
+        } else {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+    }
+
+    private static List<Long> ids(Blocks snapshot, int from, int to, int limit) {
+        int end = (int) Math.min(to, (long) from + limit);
+        List<Long> ids = new ArrayList<>(Math.max(0, end - from));
+        if (from >= end) {
+            return ids;
+        }
+        int block = Arrays.binarySearch(snapshot.starts(), from);
+        if (block < 0) {
+            block = -block - 2;
+        }
+        int position = from - snapshot.starts()[block];
+        for (int i = from; i < end; i++) {
+            if (position == snapshot.keys()[block].length) {
+                block++;
+                position = 0;
+            }
+            ids.add(snapshot.keys()[block][position++] & ID_MASK);
+        }
+        return ids;
+    }
+
+    private static int lowerBound(Blocks snapshot, long key) {
+        long[][] keys = snapshot.keys();
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle][keys[middle].length - 1] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low == keys.length
+                ? snapshot.size() : snapshot.starts()[low] + lowerBound(keys[low], 0, key);
+    }
+
+    private static int lowerBound(long[] keys, int from, long key) {
+        int position = Arrays.binarySearch(keys, from, keys.length, key);
+        return position >= 0 ? position : -position - 1;
+    }
+
+    private static LocalDate birthDate(long key) {
+        return LocalDate.ofEpochDay((key >>> ID_BITS) - DAY_OFFSET);
+    }
+
+    private static long key(LocalDate birthDate, long id) {
+        if (id < 0 || id > ID_MASK) {
+            throw new IllegalStateException(ID_EXCEPTION_MESSAGE + id);
+        }
+        long day = Math.max(-DAY_OFFSET, Math.min(DAY_OFFSET - 1, birthDate.toEpochDay()));
+        return (day + DAY_OFFSET) << ID_BITS | id;
+    }
+
+    // the non-empty blocks in key order and the position of each block's first key
+    private record Blocks(long[][] keys, int[] starts, int size) {
+        static final Blocks EMPTY = new Blocks(new long[0][], new int[0], 0);
+
+        static Blocks of(List<long[]> blocks) {
+            int[] starts = new int[blocks.size()];
+            int size = 0;
+            for (int i = 0; i < starts.length; i++) {
+                starts[i] = size;
+                size += blocks.get(i).length;
+            }
+            return new Blocks(blocks.toArray(long[][]::new), starts, size);
+        }
+    }
+
+    // an open addressing id -> (key, version) table over primitive arrays, so millions of users
+    // cost no boxed objects; deletes shift the following entries back instead of leaving marks
+    private static final class IdTable {
+        private static final long FREE = -1;
+        private static final int MIN_CAPACITY = 16;
+        private static final long PHI = 0x9E3779B97F4A7C15L;
+
+        private long[] ids = new long[0];
+        private long[] keys = new long[0];
+        private long[] versions = new long[0];
+        private int shift = Long.SIZE;
+        private int size;
+
+        int find(long id) {
+            if (size == 0) {
+                return -1;
+            }
+            int mask = ids.length - 1;
+            for (int slot = home(id); ; slot = (slot + 1) & mask) {
+                if (ids[slot] == id) {
+                    return slot;
+                }
+                if (ids[slot] == FREE) {
+                    return -1;
+                }
+            }
+        }
+
+        long key(int slot) {
+            return keys[slot];
+        }
+
+        long version(int slot) {
+            return versions[slot];
+        }
+
+        void set(int slot, long key, long version) {
+            keys[slot] = key;
+            versions[slot] = version;
+        }
+
+        void put(long id, long key, long version) {
+            if ((size + 1) * 4L > ids.length * 3L) {
+                grow();
+            }
+            int mask = ids.length - 1;
+            int slot = home(id);
+            while (ids[slot] != FREE && ids[slot] != id) {
+                slot = (slot + 1) & mask;
+            }
+            if (ids[slot] == FREE) {
+                ids[slot] = id;
+                size++;
+            }
+            set(slot, key, version);
+        }
+
+        void remove(int slot) {
+            int mask = ids.length - 1;
+            int hole = slot;
+            for (int next = (hole + 1) & mask; ids[next] != FREE; next = (next + 1) & mask) {
+                // an entry may fill the hole if the hole lies on its path from its home slot
+                if (((next - home(ids[next])) & mask) >= ((next - hole) & mask)) {
+                    ids[hole] = ids[next];
+                    set(hole, keys[next], versions[next]);
+                    hole = next;
+                }
+            }
+            ids[hole] = FREE;
+            size--;
+        }
+
+        long memoryBytes() {
+            return 3L * ids.length * Long.BYTES;
+        }
+
+        private int home(long id) {
+            return (int) ((id * PHI) >>> shift);
+        }
+
+        private void grow() {
+            long[] oldIds = ids;
+            long[] oldKeys = keys;
+            long[] oldVersions = versions;
+            int capacity = Math.max(MIN_CAPACITY, oldIds.length * 2);
+            ids = new long[capacity];
+            Arrays.fill(ids, FREE);
+            keys = new long[capacity];
+            versions = new long[capacity];
+            shift = Long.SIZE - Integer.numberOfTrailingZeros(capacity);
+            size = 0;
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldIds[i] != FREE) {
+                    put(oldIds[i], oldKeys[i], oldVersions[i]);
+                }
+            }
+        }
+    }
+}
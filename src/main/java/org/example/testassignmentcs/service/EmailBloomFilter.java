@@ -0,0 +1,212 @@
+package org.example.testassignmentcs.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import org.example.testassignmentcs.repository.UserJdbcRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+public class EmailBloomFilter implements MeterBinder {
+    private static final String METRIC_PREFIX = "users.email.filter.";
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final UserJdbcRepository userJdbcRepository;
+    private final int bitCount;
+    private final int hashCount;
+    private final LongAdder definitelyAbsent = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private volatile Bits current;
+    private volatile Bits rebuilding;
+    // every put since the last rebuild started: a registration put just before a rebuild may
+    // commit only after its scan, so the next filter takes these bits along
+    private volatile Bits recent;
+
+    public EmailBloomFilter(
+            UserJdbcRepository userJdbcRepository,
+            @Value("${api.email_filter.expected_insertions}")
+            long expectedInsertions,
+            @Value("${api.email_filter.false_positive_probability}")
+            double falsePositiveProbability
+    ) {
+        this.userJdbcRepository = userJdbcRepository;
+        this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63, Math.ceil(
+                -expectedInsertions * Math.log(falsePositiveProbability)
+                        / (Math.log(2) * Math.log(2))));
+        this.hashCount = Math.max(1, (int) Math.round(
+                (double) bitCount / expectedInsertions * Math.log(2)));
+        this.recent = new Bits(bitCount);
+    }
+
+    public boolean mightContain(String email) {
+        Bits bits = current;
+        if (bits == null) {
+            return true;
+        }
+        if (bits.mightContain(hash(email), hashCount)) {
+            return true;
+        }
+        definitelyAbsent.increment();
+        return false;
+    }
+
+    // rebuilding is read before current, while rebuild() swaps current in before it clears
+    // rebuilding, so a put racing the swap can't miss the new filter
+    public void put(String email) {
+        long hash = hash(email);
+        recent.put(hash, hashCount);
+        Bits next = rebuilding;
+        if (next != null) {
+            next.put(hash, hashCount);
+        }
+        Bits bits = current;
+        if (bits != null) {
+            bits.put(hash, hashCount);
+        }
+    }
+
+    public void recordFalsePositives(int count) {
+        falsePositives.add(count);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(
+            initialDelayString = "${api.email_filter.rebuild_interval}",
+            fixedDelayString = "${api.email_filter.rebuild_interval}"
+    )
+    public synchronized void rebuild() {
+        Bits carried = recent;
+        recent = new Bits(bitCount);
+        Bits next = new Bits(bitCount);
+        rebuilding = next;
+        boolean swapped = false;
+        try {
+            userJdbcRepository.forEachEmail(email -> next.put(hash(email), hashCount));
+            // puts made before the scan started, whose rows it may not have seen yet; a deleted
+            // email so outlives at most one more rebuild
+            next.merge(carried);
+            current = next;
+            swapped = true;
+        } finally {
+            rebuilding = null;
+            if (!swapped) {
+                recent.merge(carried);
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder(METRIC_PREFIX + "false.positive.rate", this,
+                        EmailBloomFilter::falsePositiveRate)
+                .description("Share of absent emails the filter could not rule out")
+                .register(registry);
+        Gauge.builder(METRIC_PREFIX + "expected.false.positive.rate", this,
+                        EmailBloomFilter::expectedFalsePositiveRate)
+                .description("False positive rate predicted from the share of set bits")
+                .register(registry);
+        Gauge.builder(METRIC_PREFIX + "memory", this, filter -> (double) filter.memoryBytes())
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + "skipped.lookups", definitelyAbsent,
+                        LongAdder::doubleValue)
+                .description("Email lookups skipped because the filter ruled the email out")
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + "false.positives", falsePositives,
+                        LongAdder::doubleValue)
+                .register(registry);
+    }
+
+    public double falsePositiveRate() {
+        double positives = falsePositives.sum();
+        double absent = positives + definitelyAbsent.sum();
+        return absent == 0 ? 0 : positives / absent;
+    }
+
+    public double expectedFalsePositiveRate() {
+        Bits bits = current;
+        return bits == null ? 1 : Math.pow(bits.fillRatio(), hashCount);
+    }
+
+    // the filter and the bits put since the last rebuild; a rebuild briefly adds a third copy
+    public long memoryBytes() {
+        return 2L * ((bitCount + 63) / 64) * Long.BYTES;
+    }
+
+    private static long hash(String email) {
+        String normalized = email.toLowerCase(Locale.ROOT);
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < normalized.length(); i++) {
+            hash ^= normalized.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        // MurmurHash3 fmix64, so both 32-bit halves are usable for double hashing
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    private static final class Bits {
+        private final AtomicLongArray words;
+        private final int size;
+
+        private Bits(int size) {
+            this.size = size;
+            this.words = new AtomicLongArray((size + 63) / 64);
+        }
+
+        private void put(long hash, int hashCount) {
+            int first = (int) hash;
+            int second = (int) (hash >>> 32);
+            for (int i = 0; i < hashCount; i++) {
+                int bit = Math.floorMod(first + i * second, size);
+                long mask = 1L << bit;
+                int word = bit >>> 6;
+                long value = words.get(word);
+                while ((value & mask) == 0 && !words.compareAndSet(word, value, value | mask)) {
+                    value = words.get(word);
+                }
+            }
+        }
+
+        private void merge(Bits other) {
+            for (int i = 0; i < words.length(); i++) {
+                long bits = other.words.get(i);
+                if (bits != 0) {
+                    words.getAndAccumulate(i, bits, (value, mask) -> value | mask);
+                }
+            }
+        }
+
+        private boolean mightContain(long hash, int hashCount) {
+            int first = (int) hash;
+            int second = (int) (hash >>> 32);
+            for (int i = 0; i < hashCount; i++) {
+                int bit = Math.floorMod(first + i * second, size);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private double fillRatio() {
+            long set = 0;
+            for (int i = 0; i < words.length(); i++) {
+                set += Long.bitCount(words.get(i));
+            }
+            return (double) set / size;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package org.example.testassignmentcs.service;
+
+import java.util.function.Supplier;
+
+public interface IdempotencyStore {
+    // runs create once per key of a client and answers repeats with its id; a repeat arriving
+    // while the first call still runs waits for it, and a failed call is forgotten so it can be
+    // retried
+    Long computeIfAbsent(String client, String key, String fingerprint, Supplier<Long> create);
+}
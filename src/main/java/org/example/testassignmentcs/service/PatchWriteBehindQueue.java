@@ -0,0 +1,303 @@
+package org.example.testassignmentcs.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.example.testassignmentcs.model.User;
+import org.example.testassignmentcs.repository.UserJdbcRepository;
+import org.example.testassignmentcs.repository.UserShards;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Slf4j
+@Component
+public class PatchWriteBehindQueue implements MeterBinder {
+    private static final String METRIC_PREFIX = "users.patch.queue.";
+    private static final int GUARD_STRIPES = 1024;
+
+    private final UserJdbcRepository userJdbcRepository;
+    private final Patcher patcher;
+    private final UserCache userCache;
+    private final BirthDateIndex birthDateIndex;
+    private final BirthDateHistogram birthDateHistogram;
+    private final UserDataVersion userDataVersion;
+    private final UserShards userShards;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Semaphore slots;
+    private final Map<Long, User> pending = new ConcurrentHashMap<>();
+    // held by a flush while the ids' patches are in flight and by any synchronous write of
+    // them, so an older queued patch can't land on top of a newer write; always taken in
+    // stripe order, so a flush and a chunked DELETE can't deadlock
+    private final ReentrantLock[] guards = new ReentrantLock[GUARD_STRIPES];
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public PatchWriteBehindQueue(
+            UserJdbcRepository userJdbcRepository,
+            Patcher patcher,
+            UserCache userCache,
+            BirthDateIndex birthDateIndex,
+            BirthDateHistogram birthDateHistogram,
+            UserDataVersion userDataVersion,
+            UserShards userShards,
+            TransactionTemplate transactionTemplate,
+            @Value("${api.patch_write_behind.enabled}")
+            boolean enabled,
+            @Value("${api.patch_write_behind.capacity}")
+            int capacity,
+            @Value("${api.batch_size}")
+            int batchSize
+    ) {
+        this.userJdbcRepository = userJdbcRepository;
+        this.patcher = patcher;
+        this.userCache = userCache;
+        this.birthDateIndex = birthDateIndex;
+        this.birthDateHistogram = birthDateHistogram;
+        this.userDataVersion = userDataVersion;
+        this.userShards = userShards;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.slots = new Semaphore(capacity);
+        for (int i = 0; i < GUARD_STRIPES; i++) {
+            guards[i] = new ReentrantLock();
+        }
+    }
+
+    public boolean offer(Long id, User patch) {
+        if (!enabled) {
+            return false;
+        }
+        if (userShards.isSharded() && patch.getEmail() != null) {
+            // across shards an email change first claims the new email on its home shard, which
+            // the caller has to wait for; it takes what is still queued for the user along
+            User pendingPatch = pending.remove(id);
+            if (pendingPatch != null) {
+                slots.release();
+                patcher.internPatcher(pendingPatch, patch);
+                patcher.internPatcher(patch, pendingPatch);
+            }
+            return false;
+        }
+        boolean[] queued = {true};
+        pending.compute(id, (key, pendingPatch) -> {
+            if (pendingPatch != null) {
+                patcher.internPatcher(pendingPatch, patch);
+                return pendingPatch;
+            }
+            if (slots.tryAcquire()) {
+                return patch;
+            }
+            queued[0] = false;
+            return null;
+        });
+        if (!queued[0]) {
+            // the caller writes synchronously, which slows the producer down to the DB pace
+            overflowed.increment();
+            return false;
+        }
+        accepted.increment();
+        return true;
+    }
+
+    // a PATCH that the queue turned down is written through here, after any queued patch
+    // of the user still in flight
+    public <T> T writeThrough(Long id, Supplier<T> write) {
+        return enabled ? guarded(List.of(id), write) : write.get();
+    }
+
+    // PUT and DELETE supersede whatever is still queued for their users, so it is dropped
+    public <T> T overwrite(Collection<Long> ids, Supplier<T> write) {
+        if (!enabled) {
+            return write.get();
+        }
+        return guarded(ids, () -> {
+            ids.forEach(this::discard);
+            return write.get();
+        });
+    }
+
+    @Scheduled(
+            initialDelayString = "${api.patch_write_behind.flush_interval}",
+            fixedDelayString = "${api.patch_write_behind.flush_interval}"
+    )
+    public synchronized void flush() {
+        List<Long> ids = new ArrayList<>(batchSize);
+        for (Long id : pending.keySet()) {
+            ids.add(id);
+            if (ids.size() == batchSize) {
+                flushBatch(ids);
+                ids.clear();
+            }
+        }
+        if (!ids.isEmpty()) {
+            flushBatch(ids);
+        }
+    }
+
+    @PreDestroy
+    public void drain() {
+        flush();
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder(METRIC_PREFIX + "depth", this, PatchWriteBehindQueue::size)
+                .description("Users with a pending PATCH")
+                .register(registry);
+        Gauge.builder(METRIC_PREFIX + "coalescing.ratio", this,
+                        PatchWriteBehindQueue::coalescingRatio)
+                .description("Accepted PATCHes per written row")
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + "accepted", accepted, LongAdder::doubleValue)
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + "written", written, LongAdder::doubleValue)
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + "overflowed", overflowed, LongAdder::doubleValue)
+                .description("PATCHes written synchronously because the queue was full")
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + "failed", failed, LongAdder::doubleValue)
+                .register(registry);
+    }
+
+    public double coalescingRatio() {
+        double rows = written.sum() + failed.sum();
+        return rows == 0 ? 1 : (accepted.sum() - size()) / rows;
+    }
+
+    // the patches are taken only under the guards, so a PUT or DELETE that ran meanwhile has
+    // already dropped theirs
+    private void flushBatch(List<Long> ids) {
+        guarded(ids, () -> {
+            List<User> batch = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                User patch = pending.remove(id);
+                if (patch != null) {
+                    slots.release();
+                    batch.add(patch.setId(id));
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+            return null;
+        });
+    }
+
+    private void write(List<User> batch) {
+        // shards are written one by one, so a failing shard can't undo what another has done
+        for (List<User> shardBatch : userShards.<User>group(
+                batch, patch -> userShards.shardOf(patch.getId())).values()) {
+            writeShard(shardBatch);
+        }
+        batch.forEach(patch -> userCache.invalidate(patch.getId()));
+        userDataVersion.increment();
+    }
+
+    private void writeShard(List<User> batch) {
+        try {
+            count(batch, patch(batch));
+        } catch (DataAccessException e) {
+            // one bad row (e.g. a duplicate email) must not take the rest of the batch down
+            for (User patch : batch) {
+                try {
+                    count(List.of(patch), patch(List.of(patch)));
+                } catch (DataAccessException rowException) {
+                    failed.increment();
+                    log.warn("Dropping queued PATCH for user {}", patch.getId(), rowException);
+                }
+            }
+        }
+    }
+
+    // a user deleted since its PATCH was queued matches no row
+    private void count(List<User> batch, int[] updateCounts) {
+        for (int i = 0; i < batch.size(); i++) {
+            if (updateCounts[i] == 0) {
+                failed.increment();
+                log.warn("Dropping queued PATCH for missing user {}", batch.get(i).getId());
+            } else {
+                // a rewritten batch reports SUCCESS_NO_INFO instead of a count
+                written.increment();
+            }
+        }
+    }
+
+    private int[] patch(List<User> patches) {
+        List<Long> movedIds = patches.stream()
+                .filter(patch -> patch.getBirthDate() != null)
+                .map(User::getId)
+                .toList();
+        // rows that moved are locked first, so the histogram learns their old birth date and
+        // the index moves them while they are still locked; a user deleted meanwhile is not found
+        Map<Long, LocalDate> oldBirthDates = new HashMap<>();
+        int[] updateCounts = userShards.write(
+                userShards.shardOf(patches.get(0).getId()),
+                () -> transactionTemplate.execute(status -> {
+                    oldBirthDates.putAll(userJdbcRepository.findBirthDatesForUpdate(movedIds));
+                    int[] counts = userJdbcRepository.patchAll(patches);
+                    for (User patch : patches) {
+                        if (oldBirthDates.containsKey(patch.getId())) {
+                            birthDateIndex.put(patch.getId(), patch.getBirthDate());
+                        }
+                    }
+                    return counts;
+                }));
+        for (User patch : patches) {
+            LocalDate oldBirthDate = oldBirthDates.get(patch.getId());
+            if (oldBirthDate != null) {
+                birthDateHistogram.move(oldBirthDate, patch.getBirthDate());
+            }
+        }
+        return updateCounts;
+    }
+
+    private void discard(Long id) {
+        if (pending.remove(id) != null) {
+            slots.release();
+        }
+    }
+
+    private <T> T guarded(Collection<Long> ids, Supplier<T> work) {
+        int[] stripes = ids.stream()
+                .mapToInt(id -> Long.hashCode(id) & (GUARD_STRIPES - 1))
+                .distinct()
+                .sorted()
+                .toArray();
+        for (int stripe : stripes) {
+            guards[stripe].lock();
+        }
+        try {
+            return work.get();
+        } finally {
+            for (int stripe : stripes) {
+                guards[stripe].unlock();
+            }
+        }
+    }
+}
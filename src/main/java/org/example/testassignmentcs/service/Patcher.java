@@ -1,31 +1,80 @@
 package org.example.testassignmentcs.service;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
-import org.example.testassignmentcs.dto.UserDto;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
 import org.springframework.stereotype.Component;
 
 @Component
 public class Patcher {
     private static final String PATCH_EXCEPTION_MESSAGE = "Error while applying patch";
+    private static final String PLAN_EXCEPTION_MESSAGE = "Can`t build patch plan for: ";
+    private static final MethodType GETTER_TYPE
+            = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE
+            = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final ClassValue<FieldCopier[]> PLANS = new ClassValue<>() {
+        @Override
+        protected FieldCopier[] computeValue(Class<?> type) {
+            return buildPlan(type);
+        }
+    };
 
-    public void internPatcher(
-            UserDto existingUserDto,
-            UserDto incompleteUserDto
+    public <T> List<String> internPatcher(
+            T existingDto,
+            T incompleteDto
     ) {
-
         try {
-            Class<?> userDtoClass = UserDto.class;
-            Field[] declaredFields = userDtoClass.getDeclaredFields();
-            for (Field field : declaredFields) {
-                field.setAccessible(true);
-                Object value = field.get(incompleteUserDto);
-                if (value != null) {
-                    field.set(existingUserDto, value);
+            List<String> changedFields = List.of();
+            for (FieldCopier copier : PLANS.get(existingDto.getClass())) {
+                Object value = copier.getter().invokeExact(incompleteDto);
+                if (value == null || value.equals(copier.getter().invokeExact(existingDto))) {
+                    continue;
+                }
+                copier.setter().invokeExact(existingDto, value);
+                if (changedFields.isEmpty()) {
+                    changedFields = new ArrayList<>();
                 }
-                field.setAccessible(false);
+                changedFields.add(copier.name());
             }
-        } catch (RuntimeException | IllegalAccessException e) {
+            return changedFields;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
             throw new RuntimeException(PATCH_EXCEPTION_MESSAGE);
         }
     }
+
+    private static FieldCopier[] buildPlan(Class<?> type) {
+        List<FieldCopier> plan = new ArrayList<>();
+        try {
+            for (Class<?> current = type; current != Object.class;
+                    current = current.getSuperclass()) {
+                MethodHandles.Lookup lookup
+                        = MethodHandles.privateLookupIn(current, MethodHandles.lookup());
+                for (Field field : current.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers)
+                            || field.isSynthetic()) {
+                        continue;
+                    }
+                    plan.add(new FieldCopier(
+                            field.getName(),
+                            lookup.unreflectGetter(field).asType(GETTER_TYPE),
+                            lookup.unreflectSetter(field).asType(SETTER_TYPE)
+                    ));
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(PLAN_EXCEPTION_MESSAGE + type.getName(), e);
+        }
+        return plan.toArray(FieldCopier[]::new);
+    }
+
+    private record FieldCopier(String name, MethodHandle getter, MethodHandle setter) {
+    }
 }
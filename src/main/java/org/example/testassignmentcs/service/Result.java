@@ -0,0 +1,23 @@
+package org.example.testassignmentcs.service;
+
+// the outcome of a call whose expected failures are returned rather than thrown
+public record Result<T>(T value, RuntimeException error) {
+    public static <T> Result<T> success(T value) {
+        return new Result<>(value, null);
+    }
+
+    public static <T> Result<T> failure(RuntimeException error) {
+        return new Result<>(null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    public T orElseThrow() {
+        if (error != null) {
+            throw error;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,114 @@
+package org.example.testassignmentcs.service;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.example.testassignmentcs.config.ReadWriteRoutingDataSource;
+import org.example.testassignmentcs.dto.UserDto;
+import org.example.testassignmentcs.mapper.UserMapper;
+import org.example.testassignmentcs.repository.UserRepository;
+import org.example.testassignmentcs.repository.UserShards;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@Component
+public class UserCache implements MeterBinder {
+    private static final String CACHE_NAME = "users";
+
+    private final UserRepository userRepository;
+    private final UserMapper userMapper;
+    private final UserShards userShards;
+    private final LoadingCache<Long, UserDto> cache;
+
+    public UserCache(
+            UserRepository userRepository,
+            UserMapper userMapper,
+            UserShards userShards,
+            @Value("${api.user_cache.maximum_size}")
+            long maximumSize,
+            @Value("${api.user_cache.expire_after_write}")
+            Duration expireAfterWrite
+    ) {
+        this.userRepository = userRepository;
+        this.userMapper = userMapper;
+        this.userShards = userShards;
+        // a missing user loads as null and is not cached, so later inserts are visible at once;
+        // rows are always loaded from the primary, which holds as long as a cache fill is the
+        // first statement of its transaction
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build(new CacheLoader<>() {
+                    @Override
+                    public UserDto load(Long id) {
+                        return userShards.read(userShards.shardOf(id),
+                                () -> ReadWriteRoutingDataSource.onPrimary(() -> userRepository
+                                        .findById(id)
+                                        .map(userMapper::toDto)
+                                        .orElse(null)));
+                    }
+
+                    @Override
+                    public Map<Long, UserDto> loadAll(Set<? extends Long> ids) {
+                        // all misses of one getAll call are read with a single IN query per shard
+                        Map<Long, UserDto> users = new HashMap<>();
+                        userShards.<Long>group(Set.copyOf(ids), userShards::shardOf)
+                                .forEach((shard, shardIds) -> users.putAll(userShards.read(
+                                        shard, () -> findAll(shardIds))));
+                        return users;
+                    }
+                });
+    }
+
+    public UserDto get(Long id) {
+        return cache.get(id);
+    }
+
+    public Map<Long, UserDto> getAll(Iterable<Long> ids) {
+        return cache.getAll(ids);
+    }
+
+    public void invalidate(Long id) {
+        cache.invalidate(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // a reader may reload the old row before the commit, so evict once more after it
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization() {
+                        @Override
+                        public void afterCompletion(int status) {
+                            cache.invalidate(id);
+                        }
+                    });
+        }
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+    }
+
+    private Map<Long, UserDto> findAll(List<Long> ids) {
+        return ReadWriteRoutingDataSource.onPrimary(() -> userRepository.findAllById(ids)
+                .stream()
+                .map(userMapper::toDto)
+                .collect(Collectors.toMap(UserDto::getId, Function.identity())));
+    }
+}
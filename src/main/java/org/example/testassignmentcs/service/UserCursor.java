@@ -0,0 +1,31 @@
+package org.example.testassignmentcs.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+public record UserCursor(LocalDate birthDate, Long id) {
+    private static final String CURSOR_EXCEPTION_MESSAGE = "Invalid cursor: ";
+    private static final String SEPARATOR = ":";
+
+    public String encode() {
+        String value = birthDate.toEpochDay() + SEPARATOR + id;
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static UserCursor decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor),
+                    StandardCharsets.UTF_8);
+            int separator = value.indexOf(SEPARATOR);
+            return new UserCursor(
+                    LocalDate.ofEpochDay(Long.parseLong(value.substring(0, separator))),
+                    Long.parseLong(value.substring(separator + 1))
+            );
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException(CURSOR_EXCEPTION_MESSAGE + cursor);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.example.testassignmentcs.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.stereotype.Component;
+
+@Component
+public class UserDataVersion {
+    // a restarted instance counts from zero again, the start time keeps its ETags apart
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final AtomicLong version = new AtomicLong();
+    private volatile long changedAt = System.nanoTime();
+
+    // called once a write is committed and the caches are invalidated, so a reader that
+    // sees the new version also sees the new rows
+    public void increment() {
+        // stamped first: a reader that sees the new version also sees when it was made
+        changedAt = System.nanoTime();
+        version.incrementAndGet();
+    }
+
+    // weak, since a gzipped body is not byte-equal to the plain one
+    public String etag() {
+        return "W/\"" + epoch + '-' + version.get() + '"';
+    }
+
+    // for pages read from a replica lagging up to replicaLag behind the primary: null while
+    // the last change may not have reached it, as the page could then be older than the ETag
+    public String etag(Duration replicaLag) {
+        String etag = etag();
+        return System.nanoTime() - changedAt < replicaLag.toNanos() ? null : etag;
+    }
+}
@@ -0,0 +1,61 @@
+package org.example.testassignmentcs.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import org.example.testassignmentcs.repository.UserJdbcRepository;
+import org.example.testassignmentcs.repository.UserShards;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class UserIdAllocator {
+    private final UserJdbcRepository userJdbcRepository;
+    private final UserShards userShards;
+    private final int allocationSize;
+    // the current block of every shard, counted in the shard's own users_seq
+    private final long[] next;
+    private final long[] end;
+    // a lock rather than synchronized, since a refill holds it over a JDBC call and a virtual
+    // thread blocked inside synchronized would pin its carrier; one per shard, so a slow
+    // refill on one shard does not hold back the others
+    private final ReentrantLock[] locks;
+
+    public UserIdAllocator(
+            UserJdbcRepository userJdbcRepository,
+            UserShards userShards,
+            @Value("${api.user_id.allocation_size}")
+            int allocationSize
+    ) {
+        this.userJdbcRepository = userJdbcRepository;
+        this.userShards = userShards;
+        this.allocationSize = allocationSize;
+        this.next = new long[userShards.count()];
+        this.end = new long[userShards.count()];
+        this.locks = new ReentrantLock[userShards.count()];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    // a block is taken before the insert's own transaction starts, so an insert never needs a
+    // second connection for its ids; ids of a block left unused at shutdown are skipped
+    public List<Long> next(int shard, int count) {
+        List<Long> ids = new ArrayList<>(count);
+        locks[shard].lock();
+        try {
+            while (ids.size() < count) {
+                if (next[shard] == end[shard]) {
+                    int block = Math.max(allocationSize, count - ids.size());
+                    next[shard] = userShards.write(shard,
+                            () -> userJdbcRepository.allocateIds(block));
+                    end[shard] = next[shard] + block;
+                }
+                ids.add(userShards.id(shard, next[shard]++));
+            }
+        } finally {
+            locks[shard].unlock();
+        }
+        return ids;
+    }
+}
@@ -1,23 +1,81 @@
 package org.example.testassignmentcs.service;
 
 import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.example.testassignmentcs.dto.BatchDeleteResultDto;
+import org.example.testassignmentcs.dto.BatchResultDto;
+import org.example.testassignmentcs.dto.BirthYearStatsDto;
 import org.example.testassignmentcs.dto.UserCreateRequestDto;
 import org.example.testassignmentcs.dto.UserDto;
 import org.example.testassignmentcs.dto.WrapperDto;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 public interface UserService {
     Long save(UserCreateRequestDto requestDto);
 
+    Result<Long> trySave(UserCreateRequestDto requestDto);
+
+    BatchResultDto saveAll(Iterator<UserCreateRequestDto> requestDtos);
+
+    UserDto findById(Long id);
+
+    Result<UserDto> tryFindById(Long id);
+
     void patchUpdate(Long id, UserDto userDto);
 
     void putUpdate(Long id, UserCreateRequestDto requestDto);
 
+    BirthYearStatsDto findBirthYearStats();
+
+    void checkSearch(
+            LocalDate fromDate,
+            LocalDate toDate,
+            List<String> fields,
+            Sort sort,
+            String cursor
+    );
+
     WrapperDto<UserDto> findAllUsersAgeBetween(
             LocalDate fromDate,
             LocalDate toDate,
             Pageable pageable
     );
 
+    WrapperDto<UserDto> findAllUsersAgeBetween(
+            LocalDate fromDate,
+            LocalDate toDate,
+            String cursor,
+            int size
+    );
+
+    WrapperDto<Map<String, Object>> findAllUsersAgeBetween(
+            LocalDate fromDate,
+            LocalDate toDate,
+            List<String> fields,
+            Pageable pageable
+    );
+
+    WrapperDto<Map<String, Object>> findAllUsersAgeBetween(
+            LocalDate fromDate,
+            LocalDate toDate,
+            List<String> fields,
+            String cursor,
+            int size
+    );
+
+    void exportUsersAgeBetween(
+            LocalDate fromDate,
+            LocalDate toDate,
+            Consumer<UserDto> consumer
+    );
+
     void deleteById(Long id);
+
+    BatchDeleteResultDto deleteAllById(List<Long> ids);
+
+    BatchDeleteResultDto deleteAllUsersAgeBetween(LocalDate fromDate, LocalDate toDate);
 }
@@ -0,0 +1,112 @@
+package org.example.testassignmentcs.service.impl;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.example.testassignmentcs.service.IdempotencyStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+@Component
+public class InMemoryIdempotencyStore implements IdempotencyStore, MeterBinder {
+    private static final String METRIC_PREFIX = "users.idempotency.";
+    private static final String KEY_REUSED_EXCEPTION_MESSAGE
+            = "Idempotency-Key was already used for a different request: ";
+    private static final String IN_PROGRESS_EXCEPTION_MESSAGE
+            = "A request with this Idempotency-Key is still in progress: ";
+
+    // Caffeine keeps an in-flight future until it completes and drops it if it fails, so
+    // the TTL counts from the moment the user is created
+    private final AsyncCache<ClientKey, Creation> cache;
+    private final LongAdder replayed = new LongAdder();
+    private final Duration wait;
+
+    public InMemoryIdempotencyStore(
+            @Value("${api.idempotency.maximum_size}")
+            long maximumSize,
+            @Value("${api.idempotency.ttl}")
+            Duration ttl,
+            @Value("${api.idempotency.wait}")
+            Duration wait
+    ) {
+        this.wait = wait;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .buildAsync();
+    }
+
+    @Override
+    public Long computeIfAbsent(
+            String client,
+            String key,
+            String fingerprint,
+            Supplier<Long> create
+    ) {
+        // keys are scoped per client, so one client cannot replay or block another one's key
+        CompletableFuture<Creation> created = new CompletableFuture<>();
+        CompletableFuture<Creation> first = cache.asMap()
+                .putIfAbsent(new ClientKey(client, key), created);
+        if (first == null) {
+            try {
+                Long id = create.get();
+                created.complete(new Creation(fingerprint, id));
+                return id;
+            } catch (Throwable e) {
+                // an Error has to fail the future too, or every repeat would wait on it forever
+                created.completeExceptionally(e);
+                throw e;
+            }
+        }
+        Creation creation = await(first, key);
+        if (!creation.fingerprint().equals(fingerprint)) {
+            throw new IllegalArgumentException(KEY_REUSED_EXCEPTION_MESSAGE + key);
+        }
+        replayed.increment();
+        return creation.id();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder(METRIC_PREFIX + "keys", cache, keys -> keys.synchronous().estimatedSize())
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + "replayed", replayed, LongAdder::doubleValue)
+                .description("Requests answered from the store instead of being run again")
+                .register(registry);
+    }
+
+    private Creation await(CompletableFuture<Creation> first, String key) {
+        try {
+            // the timeout is set on a copy, so the first request still completes the entry
+            return first.copy().orTimeout(wait.toMillis(), TimeUnit.MILLISECONDS).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        IN_PROGRESS_EXCEPTION_MESSAGE + key);
+            }
+            // the repeat fails the same way as the request it waited for
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private record ClientKey(String client, String key) {
+    }
+
+    private record Creation(String fingerprint, Long id) {
+    }
+}
@@ -1,8 +1,32 @@
 package org.example.testassignmentcs.service.impl;
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.Tuple;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import java.time.LocalDate;
 import java.time.Period;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.example.testassignmentcs.dto.BatchDeleteResultDto;
+import org.example.testassignmentcs.dto.BatchItemResultDto;
+import org.example.testassignmentcs.dto.BatchResultDto;
+import org.example.testassignmentcs.dto.BirthYearStatsDto;
 import org.example.testassignmentcs.dto.UserCreateRequestDto;
 import org.example.testassignmentcs.dto.UserDto;
 import org.example.testassignmentcs.dto.WrapperDto;
@@ -10,14 +34,34 @@ import org.example.testassignmentcs.exception.EntityNotFoundException;
 import org.example.testassignmentcs.exception.RegistrationException;
 import org.example.testassignmentcs.mapper.UserMapper;
 import org.example.testassignmentcs.model.User;
+import org.example.testassignmentcs.repository.UserJdbcRepository;
 import org.example.testassignmentcs.repository.UserRepository;
+import org.example.testassignmentcs.repository.UserShards;
+import org.example.testassignmentcs.service.BirthDateHistogram;
+import org.example.testassignmentcs.service.BirthDateIndex;
+import org.example.testassignmentcs.service.EmailBloomFilter;
+import org.example.testassignmentcs.service.PatchWriteBehindQueue;
 import org.example.testassignmentcs.service.Patcher;
+import org.example.testassignmentcs.service.Result;
+import org.example.testassignmentcs.service.UserCache;
+import org.example.testassignmentcs.service.UserCursor;
+import org.example.testassignmentcs.service.UserDataVersion;
+import org.example.testassignmentcs.service.UserIdAllocator;
 import org.example.testassignmentcs.service.UserService;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
+@Timed("users.service")
 public class UserServiceImpl implements UserService {
     private static final String AGE_EXCEPTION_MESSAGE
             = "User's age must be at least: ";
@@ -27,89 +71,787 @@ public class UserServiceImpl implements UserService {
             = "Can`t find user by id: ";
     private static final String DATES_EXCEPTION_MESSAGE
             = "'from' date should be before 'to' date";
+    private static final String FIELDS_EXCEPTION_MESSAGE
+            = "Unknown field: ";
+    private static final String ID_FIELD = "id";
+    private static final String EMAIL_FIELD = "email";
+    private static final String BIRTH_DATE_FIELD = "birthDate";
+    private static final String SORT_EXCEPTION_MESSAGE
+            = "Unknown sort property: ";
+    // the fields a search may select or sort by, with the getters that merge sorted shard pages
+    private static final Map<String, Function<User, ?>> USER_FIELDS = Map.of(
+            ID_FIELD, User::getId,
+            EMAIL_FIELD, User::getEmail,
+            "firstName", User::getFirstName,
+            "lastName", User::getLastName,
+            BIRTH_DATE_FIELD, User::getBirthDate,
+            "address", User::getAddress,
+            "phoneNumber", User::getPhoneNumber);
+    private static final Comparator<User> USER_KEY_ORDER
+            = Comparator.comparing(User::getBirthDate).thenComparing(User::getId);
+    private static final Comparator<Tuple> ROW_KEY_ORDER
+            = UserShards.comparator(UserShards.KEY_ORDER, UserServiceImpl::column);
     private final int adultAge;
+    private final int batchSize;
+    private final int exportFetchSize;
+    private final boolean insertFirstRegistration;
 
     private final UserRepository userRepository;
+    private final UserJdbcRepository userJdbcRepository;
     private final UserMapper userMapper;
     private final Patcher patcher;
+    private final Validator validator;
+    private final EmailBloomFilter emailFilter;
+    private final UserCache userCache;
+    private final PatchWriteBehindQueue patchQueue;
+    private final BirthDateIndex birthDateIndex;
+    private final BirthDateHistogram birthDateHistogram;
+    private final UserIdAllocator userIdAllocator;
+    private final UserDataVersion userDataVersion;
+    private final UserShards userShards;
+    private final TransactionTemplate transactionTemplate;
 
     public UserServiceImpl(
             @Value("${api.adult_age}")
             int adultAge,
+            @Value("${api.batch_size}")
+            int batchSize,
+            @Value("${api.export_fetch_size}")
+            int exportFetchSize,
+            @Value("${api.insert_first_registration}")
+            boolean insertFirstRegistration,
             UserRepository userRepository,
+            UserJdbcRepository userJdbcRepository,
             UserMapper userMapper,
-            Patcher patcher
+            Patcher patcher,
+            Validator validator,
+            EmailBloomFilter emailFilter,
+            UserCache userCache,
+            PatchWriteBehindQueue patchQueue,
+            BirthDateIndex birthDateIndex,
+            BirthDateHistogram birthDateHistogram,
+            UserIdAllocator userIdAllocator,
+            UserDataVersion userDataVersion,
+            UserShards userShards,
+            TransactionTemplate transactionTemplate
     ) {
         this.adultAge = adultAge;
+        this.batchSize = batchSize;
+        this.exportFetchSize = exportFetchSize;
+        this.insertFirstRegistration = insertFirstRegistration;
         this.userRepository = userRepository;
+        this.userJdbcRepository = userJdbcRepository;
         this.userMapper = userMapper;
         this.patcher = patcher;
+        this.validator = validator;
+        this.emailFilter = emailFilter;
+        this.userCache = userCache;
+        this.patchQueue = patchQueue;
+        this.birthDateIndex = birthDateIndex;
+        this.birthDateHistogram = birthDateHistogram;
+        this.userIdAllocator = userIdAllocator;
+        this.userDataVersion = userDataVersion;
+        this.userShards = userShards;
+        this.transactionTemplate = transactionTemplate;
     }
 
     @Override
     public Long save(UserCreateRequestDto requestDto) {
-        userRepository.findByEmail(requestDto.getEmail())
-                .ifPresent(user -> {
-                    throw new RegistrationException(EMAIL_EXCEPTION_MESSAGE);
-                });
-        checkUserAge(requestDto.getBirthDate());
-        User saved = userRepository.save(userMapper.toModel(requestDto));
-        return saved.getId();
+        return trySave(requestDto).orElseThrow();
+    }
+
+    @Override
+    public Result<Long> trySave(UserCreateRequestDto requestDto) {
+        if (!insertFirstRegistration && isRegistered(requestDto.getEmail())) {
+            return Result.failure(new RegistrationException(EMAIL_EXCEPTION_MESSAGE));
+        }
+        if (!isAdult(requestDto.getBirthDate())) {
+            return Result.failure(new RegistrationException(AGE_EXCEPTION_MESSAGE + adultAge));
+        }
+        emailFilter.put(requestDto.getEmail());
+        User user = userMapper.toModel(requestDto);
+        int shard = userShards.homeOf(user.getEmail());
+        user.setId(userIdAllocator.next(shard, 1).get(0));
+        try {
+            translateEmailViolation(() -> userShards.write(shard, () -> insertAll(List.of(user))));
+        } catch (RegistrationException e) {
+            return Result.failure(e);
+        }
+        birthDateHistogram.add(user.getBirthDate());
+        userDataVersion.increment();
+        return Result.success(user.getId());
+    }
+
+    @Override
+    public BatchResultDto saveAll(Iterator<UserCreateRequestDto> requestDtos) {
+        BatchResultDto result = new BatchResultDto();
+        List<UserCreateRequestDto> chunk = new ArrayList<>(batchSize);
+        while (requestDtos.hasNext()) {
+            chunk.add(requestDtos.next());
+            if (chunk.size() == batchSize) {
+                saveChunk(chunk, result);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            saveChunk(chunk, result);
+        }
+        return result;
+    }
+
+    @Override
+    public UserDto findById(Long id) {
+        return tryFindById(id).orElseThrow();
+    }
+
+    @Override
+    public Result<UserDto> tryFindById(Long id) {
+        UserDto userDto = userCache.get(id);
+        if (userDto == null) {
+            return Result.failure(new EntityNotFoundException(FIND_BY_ID_EXCEPTION_MESSAGE + id));
+        }
+        return Result.success(userDto);
     }
 
     @Override
     public void patchUpdate(Long id, UserDto userDto) {
-        UserDto existUserDto = userRepository.findById(id)
-                        .map(userMapper::toDto)
-                        .orElseThrow(
-                                () -> new EntityNotFoundException(FIND_BY_ID_EXCEPTION_MESSAGE + id)
-                        );
-        patcher.internPatcher(existUserDto, userDto);
-        checkUserAge(userDto.getBirthDate());
-        User userPatch = userMapper.toModelFromUserDto(existUserDto);
-        userPatch.setId(id);
-        userRepository.save(userPatch);
+        if (userDto.getBirthDate() != null) {
+            checkUserAge(userDto.getBirthDate());
+        }
+        User userPatch = userMapper.toModelFromUserDto(userDto);
+        userPatch.setId(null);
+        if (patchQueue.offer(id, userPatch)) {
+            if (userPatch.getEmail() != null) {
+                emailFilter.put(userPatch.getEmail());
+            }
+            return;
+        }
+        patchQueue.writeThrough(id, () -> userShards.write(userShards.shardOf(id),
+                () -> transactionTemplate.execute(status -> applyPatch(id, userPatch))));
+        userDataVersion.increment();
     }
 
     @Override
     public void putUpdate(Long id, UserCreateRequestDto requestDto) {
-        if (!userRepository.existsById(id)) {
-            throw new EntityNotFoundException(FIND_BY_ID_EXCEPTION_MESSAGE + id);
-        }
         checkUserAge(requestDto.getBirthDate());
         User userPut = userMapper.toModel(requestDto);
         userPut.setId(id);
-        userRepository.save(userPut);
+        patchQueue.overwrite(List.of(id), () -> userShards.write(userShards.shardOf(id),
+                () -> transactionTemplate.execute(status -> replace(userPut))));
+        emailFilter.put(userPut.getEmail());
+        userCache.invalidate(id);
+        userDataVersion.increment();
     }
 
     @Override
     public void deleteById(Long id) {
-        userRepository.deleteById(id);
+        deleteChunk(List.of(id), new BatchDeleteResultDto());
     }
 
     @Override
+    public BatchDeleteResultDto deleteAllById(List<Long> ids) {
+        BatchDeleteResultDto result = new BatchDeleteResultDto();
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            deleteChunk(ids.subList(from, Math.min(ids.size(), from + batchSize)), result);
+        }
+        return result;
+    }
+
+    @Override
+    public BatchDeleteResultDto deleteAllUsersAgeBetween(LocalDate fromDate, LocalDate toDate) {
+        checkDates(fromDate, toDate);
+        BatchDeleteResultDto result = new BatchDeleteResultDto();
+        for (int shard = 0; shard < userShards.count(); shard++) {
+            int current = shard;
+            List<Long> ids;
+            do {
+                ids = userShards.read(current, () -> userJdbcRepository
+                        .findIdsByBirthDateBetween(fromDate, toDate, batchSize));
+                deleteChunk(ids, result);
+            } while (ids.size() == batchSize);
+        }
+        return result;
+    }
+
+    @Override
+    public BirthYearStatsDto findBirthYearStats() {
+        BirthYearStatsDto stats = new BirthYearStatsDto();
+        stats.getBirthYears().putAll(birthDateHistogram.birthYears());
+        stats.getAgeBuckets().putAll(birthDateHistogram.ageBuckets(LocalDate.now(), adultAge));
+        stats.setTotal(stats.getBirthYears().values().stream()
+                .mapToLong(Long::longValue)
+                .sum());
+        return stats;
+    }
+
+    @Override
+    public void checkSearch(
+            LocalDate fromDate,
+            LocalDate toDate,
+            List<String> fields,
+            Sort sort,
+            String cursor
+    ) {
+        checkDates(fromDate, toDate);
+        if (fields != null) {
+            checkFields(fields);
+        }
+        checkSort(sort);
+        decodeCursor(cursor);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public WrapperDto<UserDto> findAllUsersAgeBetween(
             LocalDate fromDate,
             LocalDate toDate,
             Pageable pageable
     ) {
-        if (fromDate.isAfter(toDate)) {
-            throw new IllegalArgumentException(DATES_EXCEPTION_MESSAGE);
+        checkDates(fromDate, toDate);
+        checkSort(pageable.getSort());
+        List<UserDto> users;
+        if (birthDateIndex.isReady() && pageable.getSort().isUnsorted()) {
+            users = findAllById(birthDateIndex.findIds(
+                    fromDate, toDate, pageable.getOffset(), pageable.getPageSize()));
+        } else {
+            users = userShards.findPage(pageable,
+                            page -> userRepository.findAllByBirthDateBetween(
+                                    fromDate, toDate, page),
+                            sort -> UserShards.comparator(sort, USER_FIELDS::get))
+                    .stream()
+                    .map(userMapper::toDto)
+                    .toList();
         }
-        List<UserDto> users = userRepository.findAllByBirthDateBetween(fromDate, toDate, pageable)
-                .stream()
-                .map(userMapper::toDto)
-                .toList();
         WrapperDto<UserDto> responseDto = new WrapperDto<>();
         responseDto.setData(users);
         return responseDto;
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public WrapperDto<UserDto> findAllUsersAgeBetween(
+            LocalDate fromDate,
+            LocalDate toDate,
+            String cursor,
+            int size
+    ) {
+        checkDates(fromDate, toDate);
+        UserCursor after = decodeCursor(cursor);
+        List<UserDto> users;
+        if (birthDateIndex.isReady()) {
+            users = findAllById(after == null
+                    ? birthDateIndex.findIds(fromDate, toDate, 0, size + 1)
+                    : birthDateIndex.findIdsAfter(
+                            fromDate, toDate, after.birthDate(), after.id(), size + 1));
+        } else {
+            users = findAllAfter(fromDate, toDate, after, size + 1).stream()
+                    .map(userMapper::toDto)
+                    .toList();
+        }
+        WrapperDto<UserDto> responseDto = new WrapperDto<>();
+        if (users.size() > size) {
+            users = users.subList(0, size);
+            UserDto last = users.get(size - 1);
+            responseDto.setNextCursor(new UserCursor(last.getBirthDate(), last.getId()).encode());
+        }
+        responseDto.setData(users);
+        return responseDto;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public WrapperDto<Map<String, Object>> findAllUsersAgeBetween(
+            LocalDate fromDate,
+            LocalDate toDate,
+            List<String> fields,
+            Pageable pageable
+    ) {
+        checkDates(fromDate, toDate);
+        List<String> projection = checkFields(fields);
+        checkSort(pageable.getSort());
+        List<Tuple> rows;
+        if (birthDateIndex.isReady() && pageable.getSort().isUnsorted()) {
+            rows = findAllById(birthDateIndex.findIds(
+                    fromDate, toDate, pageable.getOffset(), pageable.getPageSize()),
+                    withKeys(projection));
+        } else {
+            // merging shards compares rows by their sort keys, so those are read as well
+            rows = userShards.findPage(pageable,
+                    page -> userRepository.findAllByBirthDateBetween(fromDate, toDate,
+                            userShards.isSharded() ? withSortKeys(projection, page.getSort())
+                                    : projection,
+                            page),
+                    sort -> UserShards.comparator(sort, UserServiceImpl::column));
+        }
+        WrapperDto<Map<String, Object>> responseDto = new WrapperDto<>();
+        responseDto.setData(project(rows, projection));
+        return responseDto;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public WrapperDto<Map<String, Object>> findAllUsersAgeBetween(
+            LocalDate fromDate,
+            LocalDate toDate,
+            List<String> fields,
+            String cursor,
+            int size
+    ) {
+        checkDates(fromDate, toDate);
+        List<String> projection = checkFields(fields);
+        UserCursor after = decodeCursor(cursor);
+        // the cursor is built from the last row, so its keys are read even when not requested
+        List<String> selected = withKeys(projection);
+        List<Tuple> rows;
+        if (birthDateIndex.isReady()) {
+            rows = findAllById(after == null
+                    ? birthDateIndex.findIds(fromDate, toDate, 0, size + 1)
+                    : birthDateIndex.findIdsAfter(
+                            fromDate, toDate, after.birthDate(), after.id(), size + 1),
+                    selected);
+        } else {
+            rows = userShards.findFirst(size + 1,
+                    () -> userRepository.findAllByBirthDateBetweenAfter(fromDate, toDate,
+                            after == null ? null : after.birthDate(),
+                            after == null ? null : after.id(),
+                            selected, size + 1),
+                    ROW_KEY_ORDER);
+        }
+        WrapperDto<Map<String, Object>> responseDto = new WrapperDto<>();
+        if (rows.size() > size) {
+            rows = rows.subList(0, size);
+            Tuple last = rows.get(size - 1);
+            responseDto.setNextCursor(new UserCursor(last.get(BIRTH_DATE_FIELD, LocalDate.class),
+                    last.get(ID_FIELD, Long.class)).encode());
+        }
+        responseDto.setData(project(rows, projection));
+        return responseDto;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportUsersAgeBetween(
+            LocalDate fromDate,
+            LocalDate toDate,
+            Consumer<UserDto> consumer
+    ) {
+        checkDates(fromDate, toDate);
+        if (!userShards.isSharded()) {
+            try (Stream<User> users = userRepository.streamAllByBirthDateBetween(
+                    fromDate, toDate, exportFetchSize)) {
+                users.map(userMapper::toDto)
+                        .forEach(consumer);
+            }
+            return;
+        }
+        // a stream per shard would need as many open transactions on this thread, so the
+        // shards are merged a keyset page at a time instead
+        UserCursor after = null;
+        List<User> users;
+        do {
+            users = findAllAfter(fromDate, toDate, after, exportFetchSize);
+            users.stream()
+                    .map(userMapper::toDto)
+                    .forEach(consumer);
+            if (!users.isEmpty()) {
+                User last = users.get(users.size() - 1);
+                after = new UserCursor(last.getBirthDate(), last.getId());
+            }
+        } while (users.size() == exportFetchSize);
+    }
+
+    private void saveChunk(List<UserCreateRequestDto> chunk, BatchResultDto result) {
+        int offset = result.getResults().size();
+        List<BatchItemResultDto> items = new ArrayList<>(chunk.size());
+        Set<String> chunkEmails = new HashSet<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            UserCreateRequestDto requestDto = chunk.get(i);
+            List<String> errors = validate(requestDto);
+            if (errors.isEmpty() && !chunkEmails.add(requestDto.getEmail())) {
+                errors.add(EMAIL_EXCEPTION_MESSAGE);
+            }
+            items.add(new BatchItemResultDto()
+                    .setIndex(offset + i)
+                    .setErrors(errors));
+        }
+
+        List<String> candidateEmails = chunkEmails.stream()
+                .filter(emailFilter::mightContain)
+                .toList();
+        Set<String> registeredEmails = findRegisteredEmails(candidateEmails);
+        emailFilter.recordFalsePositives(candidateEmails.size() - registeredEmails.size());
+        List<User> users = new ArrayList<>(chunkEmails.size());
+        List<BatchItemResultDto> insertedItems = new ArrayList<>(chunkEmails.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            BatchItemResultDto item = items.get(i);
+            if (!item.getErrors().isEmpty()) {
+                continue;
+            }
+            UserCreateRequestDto requestDto = chunk.get(i);
+            if (registeredEmails.contains(requestDto.getEmail())) {
+                item.getErrors().add(EMAIL_EXCEPTION_MESSAGE);
+                continue;
+            }
+            emailFilter.put(requestDto.getEmail());
+            users.add(userMapper.toModel(requestDto));
+            insertedItems.add(item);
+        }
+
+        // every user takes its id from, and is inserted into, the home shard of its email
+        Set<String> takenEmails = new HashSet<>();
+        userShards.<User>group(users, user -> userShards.homeOf(user.getEmail()))
+                .forEach((shard, shardUsers) -> {
+                    List<Long> ids = userIdAllocator.next(shard, shardUsers.size());
+                    for (int i = 0; i < shardUsers.size(); i++) {
+                        shardUsers.get(i).setId(ids.get(i));
+                    }
+                    takenEmails.addAll(insertChunk(shard, shardUsers));
+                });
+        List<User> inserted = new ArrayList<>(users.size());
+        for (int i = 0; i < insertedItems.size(); i++) {
+            User user = users.get(i);
+            if (takenEmails.contains(user.getEmail())) {
+                insertedItems.get(i).getErrors().add(EMAIL_EXCEPTION_MESSAGE);
+                continue;
+            }
+            insertedItems.get(i).setId(user.getId());
+            inserted.add(user);
+        }
+        inserted.forEach(user -> birthDateHistogram.add(user.getBirthDate()));
+        userDataVersion.increment();
+        for (BatchItemResultDto item : items) {
+            if (item.getErrors().isEmpty()) {
+                item.setStatus(BatchItemResultDto.Status.CREATED);
+                result.setCreated(result.getCreated() + 1);
+            } else {
+                item.setStatus(BatchItemResultDto.Status.REJECTED);
+                result.setRejected(result.getRejected() + 1);
+            }
+        }
+        result.getResults().addAll(items);
+    }
+
+    // the email pre-check is not atomic with the insert: when an email is registered in between,
+    // the batch is rolled back and its rows are inserted one by one, returning the emails taken
+    private Set<String> insertChunk(int shard, List<User> users) {
+        try {
+            translateEmailViolation(() -> userShards.write(shard, () -> insertAll(users)));
+            return Set.of();
+        } catch (RegistrationException e) {
+            Set<String> takenEmails = new HashSet<>();
+            for (User user : users) {
+                try {
+                    translateEmailViolation(
+                            () -> userShards.write(shard, () -> insertAll(List.of(user))));
+                } catch (RegistrationException rowException) {
+                    takenEmails.add(user.getEmail());
+                }
+            }
+            return takenEmails;
+        }
+    }
+
+    private List<UserDto> findAllById(List<Long> ids) {
+        // rows come from the cache and the misses from one IN query, in index order; a user
+        // deleted after the index lookup is simply left out of the page
+        Map<Long, UserDto> users = userCache.getAll(ids);
+        return ids.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private List<Tuple> findAllById(List<Long> ids, List<String> fields) {
+        Map<Object, Tuple> rows = new HashMap<>();
+        userShards.<Long>group(ids, userShards::shardOf).forEach((shard, shardIds) -> rows.putAll(
+                userShards.read(shard, () -> userRepository.findAllByIdIn(shardIds, fields))
+                        .stream()
+                        .collect(Collectors.toMap(row -> row.get(ID_FIELD),
+                                Function.identity()))));
+        return ids.stream()
+                .map(rows::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private List<Map<String, Object>> project(List<Tuple> rows, List<String> fields) {
+        List<Map<String, Object>> data = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (String field : fields) {
+                values.put(field, row.get(field));
+            }
+            data.add(values);
+        }
+        return data;
+    }
+
+    private List<String> applyPatch(Long id, User userPatch) {
+        User user = userRepository.findForUpdateById(id)
+                .orElseThrow(
+                        () -> new EntityNotFoundException(FIND_BY_ID_EXCEPTION_MESSAGE + id)
+                );
+        final LocalDate oldBirthDate = user.getBirthDate();
+        final String oldEmail = user.getEmail();
+        List<String> changedFields = patcher.internPatcher(user, userPatch);
+        if (changedFields.isEmpty()) {
+            return changedFields;
+        }
+        if (changedFields.contains(EMAIL_FIELD)) {
+            emailFilter.put(user.getEmail());
+            changeEmail(id, oldEmail, user.getEmail());
+        }
+        translateEmailViolation(() -> userRepository.saveAndFlush(user));
+        if (changedFields.contains(BIRTH_DATE_FIELD)) {
+            birthDateIndex.put(id, user.getBirthDate());
+        }
+        userCache.invalidate(id);
+        birthDateHistogram.move(oldBirthDate, user.getBirthDate());
+        return changedFields;
+    }
+
+    private LocalDate replace(User userPut) {
+        LocalDate oldBirthDate;
+        if (userShards.isSharded()) {
+            // across shards the old email has to be known to move its directory row, so the
+            // row is locked and read first
+            oldBirthDate = userJdbcRepository.findBirthDatesForUpdate(
+                    List.of(userPut.getId())).get(userPut.getId());
+            if (oldBirthDate != null) {
+                changeEmail(userPut.getId(), userJdbcRepository.findEmails(
+                        List.of(userPut.getId())).get(userPut.getId()), userPut.getEmail());
+                translateEmailViolation(() -> userJdbcRepository.update(userPut));
+            }
+        } else {
+            oldBirthDate = translateEmailViolation(
+                    () -> userJdbcRepository.updateReturningOldBirthDate(userPut));
+        }
+        if (oldBirthDate == null) {
+            throw new EntityNotFoundException(FIND_BY_ID_EXCEPTION_MESSAGE + userPut.getId());
+        }
+        birthDateIndex.put(userPut.getId(), userPut.getBirthDate());
+        birthDateHistogram.move(oldBirthDate, userPut.getBirthDate());
+        return oldBirthDate;
+    }
+
+    private void deleteChunk(List<Long> ids, BatchDeleteResultDto result) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Map<Long, LocalDate> birthDates = new HashMap<>();
+        patchQueue.overwrite(ids, () -> {
+            userShards.<Long>group(ids, userShards::shardOf).forEach((shard, shardIds) ->
+                    birthDates.putAll(userShards.write(shard, () -> transactionTemplate.execute(
+                            status -> deleteLocked(shardIds)))));
+            return null;
+        });
+        birthDates.values().forEach(birthDateHistogram::remove);
+        ids.forEach(userCache::invalidate);
+        userDataVersion.increment();
+        result.getChunks().add(birthDates.size());
+        result.setDeleted(result.getDeleted() + birthDates.size());
+    }
+
+    private Map<Long, LocalDate> deleteLocked(List<Long> ids) {
+        Map<Long, LocalDate> lockedBirthDates = userJdbcRepository.findBirthDatesForUpdate(ids);
+        if (userShards.isSharded()) {
+            releaseEmailsOnCompletion(
+                    users(userJdbcRepository.findEmails(lockedBirthDates.keySet())), List.of());
+        }
+        userJdbcRepository.deleteAllById(lockedBirthDates.keySet());
+        birthDateIndex.remove(lockedBirthDates.keySet());
+        return lockedBirthDates;
+    }
+
+    private List<String> validate(UserCreateRequestDto requestDto) {
+        List<String> errors = new ArrayList<>();
+        for (ConstraintViolation<UserCreateRequestDto> violation
+                : validator.validate(requestDto)) {
+            errors.add(violation.getPropertyPath() + ": " + violation.getMessage());
+        }
+        if (requestDto.getBirthDate() != null && !isAdult(requestDto.getBirthDate())) {
+            errors.add(AGE_EXCEPTION_MESSAGE + adultAge);
+        }
+        return errors;
+    }
+
+    private <T> T translateEmailViolation(Supplier<T> write) {
+        try {
+            return write.get();
+        } catch (DataIntegrityViolationException e) {
+            String message = e.getMostSpecificCause().getMessage();
+            if (message != null
+                    && message.toLowerCase(Locale.ROOT).contains(User.EMAIL_CONSTRAINT)) {
+                throw new RegistrationException(EMAIL_EXCEPTION_MESSAGE);
+            }
+            throw e;
+        }
+    }
+
+    private boolean isRegistered(String email) {
+        if (!emailFilter.mightContain(email)) {
+            return false;
+        }
+        boolean registered = userShards.isSharded()
+                ? !findRegisteredEmails(List.of(email)).isEmpty()
+                : userRepository.findByEmail(email).isPresent();
+        if (registered) {
+            return true;
+        }
+        emailFilter.recordFalsePositives(1);
+        return false;
+    }
+
+    private Set<String> findRegisteredEmails(Collection<String> emails) {
+        if (!userShards.isSharded()) {
+            return userJdbcRepository.findRegisteredEmails(emails);
+        }
+        // the directory row of an email is on its home shard, wherever its user lives
+        Set<String> registeredEmails = new HashSet<>();
+        userShards.<String>group(emails, userShards::homeOf).forEach((shard, shardEmails) ->
+                registeredEmails.addAll(userShards.read(shard,
+                        () -> userJdbcRepository.findClaimedEmails(shardEmails))));
+        return registeredEmails;
+    }
+
+    // a new user lives on the home shard of its email, so across shards the email is claimed
+    // in the same transaction as the insert; the users are indexed before it commits
+    private int[] insertAll(List<User> users) {
+        return transactionTemplate.execute(status -> {
+            if (userShards.isSharded()) {
+                claimEmails(users);
+            }
+            int[] counts = userJdbcRepository.insertAll(users);
+            birthDateIndex.add(users);
+            return counts;
+        });
+    }
+
+    // across shards a changed email is claimed on its home shard before the row is written; the
+    // old email is released once that commits and the new one if it rolls back, so a failure
+    // in between leaves an email blocked rather than taken twice
+    private void changeEmail(Long id, String oldEmail, String newEmail) {
+        if (!userShards.isSharded() || newEmail.equals(oldEmail)) {
+            return;
+        }
+        List<User> newClaim = List.of(new User().setId(id).setEmail(newEmail));
+        userShards.write(userShards.homeOf(newEmail), () -> {
+            claimEmails(newClaim);
+            return null;
+        });
+        releaseEmailsOnCompletion(List.of(new User().setId(id).setEmail(oldEmail)), newClaim);
+    }
+
+    private void claimEmails(List<User> users) {
+        try {
+            userJdbcRepository.claimEmails(users);
+        } catch (DuplicateKeyException e) {
+            throw new RegistrationException(EMAIL_EXCEPTION_MESSAGE);
+        }
+    }
+
+    private void releaseEmailsOnCompletion(List<User> onCommit, List<User> onRollback) {
+        TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status == STATUS_COMMITTED) {
+                            releaseEmails(onCommit);
+                        } else if (status == STATUS_ROLLED_BACK) {
+                            releaseEmails(onRollback);
+                        }
+                    }
+                });
+    }
+
+    private void releaseEmails(List<User> users) {
+        userShards.<User>group(users, user -> userShards.homeOf(user.getEmail()))
+                .forEach((shard, shardUsers) -> userShards.write(shard,
+                        () -> userJdbcRepository.releaseEmails(shardUsers)));
+    }
+
+    private List<User> findAllAfter(
+            LocalDate fromDate,
+            LocalDate toDate,
+            UserCursor after,
+            int limit
+    ) {
+        Pageable firstPage = PageRequest.of(0, limit);
+        return userShards.findFirst(limit, () -> after == null
+                        ? userRepository.findAllByBirthDateBetweenOrderByBirthDateAscIdAsc(
+                                fromDate, toDate, firstPage)
+                        : userRepository.findAllByBirthDateBetweenAfter(
+                                fromDate, toDate, after.birthDate(), after.id(), firstPage),
+                USER_KEY_ORDER);
+    }
+
+    private UserCursor decodeCursor(String cursor) {
+        return cursor == null || cursor.isEmpty() ? null : UserCursor.decode(cursor);
+    }
+
+    private List<String> checkFields(List<String> fields) {
+        for (String field : fields) {
+            if (!USER_FIELDS.containsKey(field)) {
+                throw new IllegalArgumentException(FIELDS_EXCEPTION_MESSAGE + field);
+            }
+        }
+        return fields.stream()
+                .distinct()
+                .toList();
+    }
+
+    private void checkSort(Sort sort) {
+        for (Sort.Order order : sort) {
+            if (!USER_FIELDS.containsKey(order.getProperty())) {
+                throw new IllegalArgumentException(SORT_EXCEPTION_MESSAGE + order.getProperty());
+            }
+        }
+    }
+
+    private List<String> withKeys(List<String> fields) {
+        List<String> selected = new ArrayList<>(fields);
+        for (String key : List.of(ID_FIELD, BIRTH_DATE_FIELD)) {
+            if (!selected.contains(key)) {
+                selected.add(key);
+            }
+        }
+        return selected;
+    }
+
+    private List<String> withSortKeys(List<String> fields, Sort sort) {
+        List<String> selected = new ArrayList<>(fields);
+        for (Sort.Order order : sort) {
+            if (!selected.contains(order.getProperty())) {
+                selected.add(order.getProperty());
+            }
+        }
+        return selected;
+    }
+
+    private void checkDates(LocalDate fromDate, LocalDate toDate) {
+        if (fromDate.isAfter(toDate)) {
+            throw new IllegalArgumentException(DATES_EXCEPTION_MESSAGE);
+        }
+    }
+
     private void checkUserAge(LocalDate birthDate) {
-        Period period = Period.between(birthDate, LocalDate.now());
-        int userAge = period.getYears();
-        if (userAge < adultAge) {
+        if (!isAdult(birthDate)) {
             throw new RegistrationException(AGE_EXCEPTION_MESSAGE + adultAge);
         }
     }
+
+    private boolean isAdult(LocalDate birthDate) {
+        Period period = Period.between(birthDate, LocalDate.now());
+        return period.getYears() >= adultAge;
+    }
+
+    private static List<User> users(Map<Long, String> emails) {
+        List<User> users = new ArrayList<>(emails.size());
+        emails.forEach((id, email) -> users.add(new User().setId(id).setEmail(email)));
+        return users;
+    }
+
+    private static Function<Tuple, ?> column(String alias) {
+        return row -> row.get(alias);
+    }
 }
@@ -0,0 +1,7 @@
+-- Creates the email directory that keeps emails unique across shards (api.datasource.shard_urls).
+-- Run it on every shard, together with the users and users_seq tables, before the application
+-- starts with shards. Existing users are not moved: sharding starts from empty shards.
+CREATE TABLE user_emails (
+    email VARCHAR(255) NOT NULL PRIMARY KEY,
+    user_id BIGINT NOT NULL
+);
@@ -0,0 +1,6 @@
+-- Moves an existing MySQL users table from AUTO_INCREMENT ids to the users_seq counter that
+-- UserIdAllocator takes its id blocks from. Run it once with the application stopped;
+-- existing rows keep their ids and new ones start after the highest of them.
+CREATE TABLE users_seq (next_val BIGINT);
+INSERT INTO users_seq (next_val) SELECT COALESCE(MAX(id), 0) + 1 FROM users;
+ALTER TABLE users MODIFY id BIGINT NOT NULL;
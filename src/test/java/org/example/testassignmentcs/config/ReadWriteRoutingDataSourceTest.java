@@ -0,0 +1,115 @@
+package org.example.testassignmentcs.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.Cookie;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+// two embedded H2 databases stand in for the primary and a replica; nothing replicates between
+// them, so the rows a request returns tell which one served it
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing_primary",
+        "api.datasource.replica_urls=" + ReadWriteRoutingDataSourceTest.REPLICA_URL,
+        "api.datasource.replica_lag=PT1M",
+        "spring.datasource.hikari.minimum-idle=" + ReadWriteRoutingDataSourceTest.MINIMUM_IDLE,
+        "api.datasource.replicas[0].maximum_pool_size="
+                + ReadWriteRoutingDataSourceTest.REPLICA_POOL_SIZE
+})
+@AutoConfigureMockMvc
+class ReadWriteRoutingDataSourceTest {
+    // kept open between connections, as the replica pool only starts on its first read
+    static final String REPLICA_URL = "jdbc:h2:mem:routing_replica;DB_CLOSE_DELAY=-1";
+    static final int MINIMUM_IDLE = 2;
+    static final int REPLICA_POOL_SIZE = 3;
+    private static final int PRIMARY_POOL_SIZE = 10;
+    private static final String SEARCH_URL = "/users/search?from=1990-01-01&to=1990-12-31";
+    private static final String USER_BODY = """
+            {"email": "primary@example.com", "firstName": "John", "lastName": "Smith",
+             "birthDate": "1990-01-01"}
+            """;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        try (Connection replica = DriverManager.getConnection(REPLICA_URL, "sa", "password");
+                Statement statement = replica.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+            // outside a transaction, so the schema comes from the primary
+            for (String ddl : jdbcTemplate.queryForList("SCRIPT NODATA", String.class)) {
+                if (!ddl.startsWith("--")) {
+                    statement.execute(ddl);
+                }
+            }
+            statement.execute("INSERT INTO users (id, email, first_name, last_name, birth_date)"
+                    + " VALUES (1000000, 'replica@example.com', 'Jane', 'Doe', DATE '1990-06-06')");
+        }
+    }
+
+    @Test
+    @DisplayName("Searches are served by the replica unless the client has just written")
+    void search_ReplicaConfigured_ReadsReplicaUntilClientWrites() throws Exception {
+        Cookie[] cookies = mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(USER_BODY))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getCookies();
+        String location = "/users/" + jdbcTemplate.queryForObject(
+                "SELECT id FROM users WHERE email = 'primary@example.com'", Long.class);
+
+        // the write is younger than the replica lag, so the replica's page can't carry an ETag
+        mockMvc.perform(get(SEARCH_URL))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.data.length()").value(1))
+                .andExpect(jsonPath("$.data[0].email").value("replica@example.com"));
+        mockMvc.perform(get(SEARCH_URL).cookie(cookies))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.data.length()").value(1))
+                .andExpect(jsonPath("$.data[0].email").value("primary@example.com"));
+        // cached rows outlive the request, so they are loaded from the primary
+        mockMvc.perform(get(location))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email").value("primary@example.com"));
+    }
+
+    @Test
+    @DisplayName("A replica pool takes the primary's settings and then its own")
+    void search_ReplicaPoolSettings_OverridePrimarySettings() throws Exception {
+        mockMvc.perform(get(SEARCH_URL))
+                .andExpect(status().isOk());
+
+        assertEquals(MINIMUM_IDLE, gauge("hikaricp.connections.min", "replica-0"));
+        assertEquals(REPLICA_POOL_SIZE, gauge("hikaricp.connections.max", "replica-0"));
+        assertEquals(PRIMARY_POOL_SIZE, gauge("hikaricp.connections.max", "primary"));
+    }
+
+    private int gauge(String metric, String pool) {
+        return (int) meterRegistry.get(metric).tag("pool", pool).gauge().value();
+    }
+}
@@ -0,0 +1,215 @@
+package org.example.testassignmentcs.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import org.example.testassignmentcs.Application;
+import org.example.testassignmentcs.dto.UserCreateRequestDto;
+import org.example.testassignmentcs.service.UserService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpStatus;
+
+@Tag("performance")
+class UserControllerLoadTest {
+    private static final int USERS = 2_000;
+    private static final int FIRST_BIRTH_YEAR = 1970;
+    private static final int BIRTH_YEARS = 30;
+    private static final int CONCURRENCY = Integer.getInteger("performance.load.concurrency", 400);
+    private static final int REQUESTS = Integer.getInteger("performance.load.requests", 10_000);
+    private static final int WARM_UP_REQUESTS = REQUESTS / 5;
+    private static final String CLIENT_HEADER = "X-Client-Id";
+    private static final String LIMITED_METRIC = "users.rate_limit.limited";
+    private static final String SHED_METRIC = "users.db.admission.shed";
+    // virtual threads must not cost throughput, and the admission limiter must keep their
+    // tail latency in the platform pool's range even though no request is left to time out
+    private static final double MIN_THROUGHPUT_RATIO = Double.parseDouble(
+            System.getProperty("performance.load.min_throughput_ratio", "0.8"));
+    private static final double MAX_P99_RATIO = Double.parseDouble(
+            System.getProperty("performance.load.max_p99_ratio", "2"));
+    // the thread modes are compared on what the server can serve, not on one client's budget
+    private static final String[] LIFTED_RATE_LIMIT = {
+            "api.rate_limit.read_rate=1000000000",
+            "api.rate_limit.read_burst=1000000000"};
+    // a quarter of the workers share one client id and overrun its budget, while the others
+    // stay within theirs and, together, back up the few permits so that admission sheds; the
+    // platform pool is used, since its request threads queue on the permits rather than on
+    // the carrier threads
+    private static final int GREEDY_WORKER_SHARE = 4;
+    private static final String[] PROTECTED = {
+            "api.trusted_proxies=127.0.0.1",
+            "api.rate_limit.read_rate=10",
+            "api.rate_limit.read_burst=20",
+            "api.db_admission.permits=2",
+            "api.db_admission.shed_wait=PT0.05S"};
+
+    @Test
+    @DisplayName("Compare p99 latency and throughput of platform and virtual thread serving")
+    void search_PlatformAndVirtualThreads_ServeLoadWithoutErrors() throws Exception {
+        LoadResult platform = run(false, worker -> null, LIFTED_RATE_LIMIT);
+        LoadResult virtual = run(true, worker -> null, LIFTED_RATE_LIMIT);
+        String comparison = "platform threads: " + platform + "; virtual threads: " + virtual;
+        assertTrue(virtual.throughput() >= platform.throughput() * MIN_THROUGHPUT_RATIO,
+                comparison);
+        assertTrue(virtual.p99Millis() <= platform.p99Millis() * MAX_P99_RATIO, comparison);
+    }
+
+    @Test
+    @DisplayName("Under the same load a greedy client is limited and the backed up pool sheds")
+    void search_GreedyClientAndOverload_LimitsAndSheds() throws Exception {
+        LoadResult result = run(false, worker -> worker % GREEDY_WORKER_SHARE == 0
+                ? "greedy" : "client-" + worker, PROTECTED);
+
+        assertTrue(result.limited() > 0, "No request was rate limited: " + result);
+        assertTrue(result.shed() > 0, "No request was shed: " + result);
+        assertEquals(result.limited() + result.shed(), result.tooManyRequests(),
+                "Unexpected 429 responses: " + result);
+    }
+
+    private LoadResult run(boolean virtualThreads, IntFunction<String> clientIds,
+                           String... arguments) throws Exception {
+        // passed as arguments, since default properties lose to application.properties
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.threads.virtual.enabled=" + virtualThreads,
+                "--spring.datasource.url=jdbc:h2:mem:load" + virtualThreads + arguments.length));
+        Arrays.stream(arguments).forEach(argument -> args.add("--" + argument));
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(
+                Application.class).run(args.toArray(String[]::new))) {
+            context.getBean(UserService.class).saveAll(IntStream.range(0, USERS)
+                    .mapToObj(i -> new UserCreateRequestDto()
+                            .setEmail("load" + i + "@example.com")
+                            .setFirstName("Load")
+                            .setLastName("User")
+                            .setBirthDate(LocalDate.of(FIRST_BIRTH_YEAR + i % BIRTH_YEARS, 1, 1)
+                                    .plusDays(i % 365)))
+                    .iterator());
+            String baseUrl = "http://127.0.0.1:"
+                    + context.getEnvironment().getProperty("local.server.port");
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .build();
+            fire(client, baseUrl, clientIds, WARM_UP_REQUESTS);
+            MeterRegistry registry = context.getBean(MeterRegistry.class);
+            double limited = count(registry, LIMITED_METRIC);
+            double shed = count(registry, SHED_METRIC);
+            LoadResult result = fire(client, baseUrl, clientIds, REQUESTS).counted(
+                    (int) (count(registry, LIMITED_METRIC) - limited),
+                    (int) (count(registry, SHED_METRIC) - shed));
+            assertEquals(0, result.failed(), "Unexpected responses: " + result);
+            assertTrue(result.ok() > 0, "No request was admitted: " + result);
+            return result;
+        }
+    }
+
+    private LoadResult fire(HttpClient client, String baseUrl, IntFunction<String> clientIds,
+                            int requests) throws Exception {
+        long[] latencies = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger ok = new AtomicInteger();
+        AtomicInteger tooManyRequests = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService clients = Executors.newFixedThreadPool(CONCURRENCY);
+        final long start = System.nanoTime();
+        for (int worker = 0; worker < CONCURRENCY; worker++) {
+            String clientId = clientIds.apply(worker);
+            clients.execute(() -> {
+                for (int i = next.getAndIncrement(); i < requests; i = next.getAndIncrement()) {
+                    int year = FIRST_BIRTH_YEAR
+                            + ThreadLocalRandom.current().nextInt(BIRTH_YEARS);
+                    HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl
+                            + "/users/search?from=" + year + "-01-01&to=" + year
+                            + "-12-31&size=20"));
+                    if (clientId != null) {
+                        request.header(CLIENT_HEADER, clientId);
+                    }
+                    long sent = System.nanoTime();
+                    try {
+                        int status = client.send(request.build(),
+                                        HttpResponse.BodyHandlers.discarding())
+                                .statusCode();
+                        if (status == HttpStatus.OK.value()) {
+                            ok.incrementAndGet();
+                        } else if (status == HttpStatus.TOO_MANY_REQUESTS.value()) {
+                            tooManyRequests.incrementAndGet();
+                        } else if (status == HttpStatus.SERVICE_UNAVAILABLE.value()) {
+                            rejected.incrementAndGet();
+                        } else {
+                            failed.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                    }
+                    latencies[i] = System.nanoTime() - sent;
+                }
+            });
+        }
+        clients.shutdown();
+        assertTrue(clients.awaitTermination(10, TimeUnit.MINUTES));
+        long elapsed = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        return new LoadResult(
+                // only served requests count, so quickly turned away ones don't inflate it
+                ok.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed,
+                latencies[(int) Math.ceil(requests * 0.99) - 1] / 1_000_000.0,
+                ok.get(),
+                tooManyRequests.get(),
+                rejected.get(),
+                failed.get(),
+                0,
+                0
+        );
+    }
+
+    private static double count(MeterRegistry registry, String metric) {
+        return registry.find(metric).functionCounters().stream()
+                .mapToDouble(FunctionCounter::count)
+                .sum();
+    }
+
+    // a 429 is either the client's rate limit or admission shedding, told apart by the server's
+    // counters; a 503 is a request that timed out waiting for a database permit
+    private record LoadResult(
+            double throughput,
+            double p99Millis,
+            int ok,
+            int tooManyRequests,
+            int rejected,
+            int failed,
+            int limited,
+            int shed
+    ) {
+        LoadResult counted(int limited, int shed) {
+            return new LoadResult(throughput, p99Millis, ok, tooManyRequests, rejected, failed,
+                    limited, shed);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.0f ok/s, p99 %.1f ms, ok %d, 429 %d (limited %d, shed %d), "
+                            + "rejected %d, failed %d", throughput, p99Millis, ok,
+                    tooManyRequests, limited, shed, rejected, failed);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package org.example.testassignmentcs.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import org.example.testassignmentcs.dto.UserCreateRequestDto;
+import org.example.testassignmentcs.service.UserCache;
+import org.example.testassignmentcs.service.UserService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class UserControllerStatementCountTest {
+    private static final Set<String> STATEMENT_METHODS
+            = Set.of("createStatement", "prepareStatement", "prepareCall");
+    private static final AtomicInteger STATEMENTS = new AtomicInteger();
+    private static final String PUT_BODY = """
+            {"email": "%s", "firstName": "David", "lastName": "Davis",
+             "birthDate": "1991-01-01"}
+            """;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserCache userCache;
+
+    @Test
+    @DisplayName("Verify PUT replaces a user with a single statement")
+    void putUser_ExistingId_OneStatement() throws Exception {
+        Long id = userService.save(new UserCreateRequestDto()
+                .setEmail("put.count@example.com")
+                .setFirstName("John")
+                .setLastName("Smith")
+                .setBirthDate(LocalDate.of(1990, 1, 1)));
+
+        STATEMENTS.set(0);
+        mockMvc.perform(put("/users/" + id)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(PUT_BODY.formatted("put.count@example.com")))
+                .andExpect(status().isAccepted());
+
+        assertEquals(1, STATEMENTS.get());
+    }
+
+    @Test
+    @DisplayName("PUT with non-existing id returns 404 after a single statement")
+    void putUser_NonExistingId_OneStatement() throws Exception {
+        STATEMENTS.set(0);
+        mockMvc.perform(put("/users/" + Long.MAX_VALUE)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(PUT_BODY.formatted("put.missing@example.com")))
+                .andExpect(status().isNotFound());
+
+        assertEquals(1, STATEMENTS.get());
+    }
+
+    @Test
+    @DisplayName("PUT of a user missing from the cache reads its old birth date in the update")
+    void putUser_UncachedUser_OneStatement() throws Exception {
+        Long id = userService.save(new UserCreateRequestDto()
+                .setEmail("put.uncached@example.com")
+                .setFirstName("John")
+                .setLastName("Smith")
+                .setBirthDate(LocalDate.of(1990, 1, 1)));
+        userCache.invalidate(id);
+
+        STATEMENTS.set(0);
+        mockMvc.perform(put("/users/" + id)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(PUT_BODY.formatted("put.uncached@example.com")))
+                .andExpect(status().isAccepted());
+
+        assertEquals(1, STATEMENTS.get());
+    }
+
+    @Test
+    @DisplayName("Search with the current ETag answers 304 without a statement until a write")
+    void search_UnchangedEtag_NotModifiedWithoutStatements() throws Exception {
+        String searchUrl = "/users/search?from=1990-01-01&to=1999-12-31";
+        String etag = mockMvc.perform(get(searchUrl))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        STATEMENTS.set(0);
+        mockMvc.perform(get(searchUrl).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        assertEquals(0, STATEMENTS.get());
+
+        userService.save(new UserCreateRequestDto()
+                .setEmail("search.etag@example.com")
+                .setFirstName("John")
+                .setLastName("Smith")
+                .setBirthDate(LocalDate.of(1992, 2, 2)));
+        mockMvc.perform(get(searchUrl).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG));
+    }
+
+    @Test
+    @DisplayName("An invalid search is rejected even with the current ETag and gets no ETag")
+    void search_InvalidRequestWithCurrentEtag_BadRequestWithoutEtag() throws Exception {
+        String etag = mockMvc.perform(get("/users/search?from=1990-01-01&to=1999-12-31"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        STATEMENTS.set(0);
+        mockMvc.perform(get("/users/search?from=1999-12-31&to=1990-01-01")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isBadRequest())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG));
+        mockMvc.perform(get("/users/search?from=1990-01-01&to=1999-12-31&sort=password")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isBadRequest())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG));
+        assertEquals(0, STATEMENTS.get());
+    }
+
+    @Test
+    @DisplayName("A retried POST with the same Idempotency-Key gets the first 201 without SQL")
+    void createUser_RepeatedIdempotencyKey_NoStatements() throws Exception {
+        String location = mockMvc.perform(post("/users")
+                        .header("Idempotency-Key", "create-retry")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(PUT_BODY.formatted("create.retry@example.com")))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getHeader(HttpHeaders.LOCATION);
+
+        STATEMENTS.set(0);
+        mockMvc.perform(post("/users")
+                        .header("Idempotency-Key", "create-retry")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(PUT_BODY.formatted("create.retry@example.com")))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(HttpHeaders.LOCATION, location));
+
+        assertEquals(0, STATEMENTS.get());
+    }
+
+    @Test
+    @DisplayName("A duplicate registration is answered with the error body and no insert")
+    void createUser_RegisteredEmail_BadRequestWithOneStatement() throws Exception {
+        mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(PUT_BODY.formatted("create.duplicate@example.com")))
+                .andExpect(status().isCreated());
+
+        STATEMENTS.set(0);
+        mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(PUT_BODY.formatted("create.duplicate@example.com")))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.timestamp").exists())
+                .andExpect(jsonPath("$.status").value("BAD_REQUEST"))
+                .andExpect(jsonPath("$.errors").value("This email is already registered"));
+
+        assertEquals(1, STATEMENTS.get());
+    }
+
+    @TestConfiguration
+    static class StatementCountingConfig {
+        @Bean
+        static BeanPostProcessor statementCountingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource dataSource) {
+                        return new StatementCountingDataSource(dataSource);
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+
+    private static class StatementCountingDataSource extends DelegatingDataSource {
+        StatementCountingDataSource(DataSource targetDataSource) {
+            super(targetDataSource);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[] {Connection.class},
+                    (proxy, method, args) -> {
+                        if (STATEMENT_METHODS.contains(method.getName())) {
+                            STATEMENTS.incrementAndGet();
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+}
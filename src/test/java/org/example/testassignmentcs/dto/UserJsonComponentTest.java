@@ -0,0 +1,66 @@
+package org.example.testassignmentcs.dto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+class UserJsonComponentTest {
+    private final ObjectMapper defaultMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    private final ObjectMapper tunedMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .serializers(new UserJsonComponent.UserDtoSerializer(),
+                    new UserJsonComponent.WrapperDtoSerializer())
+            .build();
+
+    @Test
+    @DisplayName("Verify users are written exactly as the default serializer writes them")
+    void serialize_UserDto_MatchesDefault() throws Exception {
+        UserDto user = new UserDto()
+                .setId(1L)
+                .setEmail("john\"smith\"@example.com")
+                .setFirstName("Jöhn")
+                .setLastName("Smith")
+                .setBirthDate(LocalDate.of(1990, 1, 9))
+                .setAddress("Baker Street")
+                .setPhoneNumber("0677377711");
+
+        assertSameJson(user);
+        assertSameJson(new UserDto());
+        assertSameJson(new UserDto().setBirthDate(LocalDate.of(5, 12, 31)));
+        assertSameJson(new UserDto().setBirthDate(LocalDate.of(10_000, 1, 1)));
+    }
+
+    @Test
+    @DisplayName("Verify pages of users and projected rows match the default serializer")
+    void serialize_WrapperDto_MatchesDefault() throws Exception {
+        WrapperDto<UserDto> users = new WrapperDto<>();
+        users.setData(List.of(
+                new UserDto().setId(1L).setBirthDate(LocalDate.of(1990, 1, 1)),
+                new UserDto().setId(2L).setBirthDate(LocalDate.of(1991, 11, 21))));
+        users.setNextCursor("MTIzOjQ1");
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("email", "john@example.com");
+        row.put("birthDate", LocalDate.of(1990, 1, 1));
+        WrapperDto<Map<String, Object>> rows = new WrapperDto<>();
+        rows.setData(List.of(row));
+
+        assertSameJson(users);
+        assertSameJson(rows);
+        assertSameJson(new WrapperDto<UserDto>());
+    }
+
+    private void assertSameJson(Object value) throws Exception {
+        assertEquals(defaultMapper.writeValueAsString(value),
+                tunedMapper.writeValueAsString(value));
+    }
+}
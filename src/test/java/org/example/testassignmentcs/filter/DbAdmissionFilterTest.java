@@ -0,0 +1,78 @@
+package org.example.testassignmentcs.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Duration;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class DbAdmissionFilterTest {
+    private static final Duration TIMEOUT = Duration.ofMillis(10);
+    private static final Duration SHED_WAIT = Duration.ofMillis(5);
+
+    @Test
+    @DisplayName("Verify admitted requests release their permit")
+    void doFilter_PermitAvailable_ReleasesPermit() throws Exception {
+        DbAdmissionFilter filter = new DbAdmissionFilter(1, TIMEOUT, SHED_WAIT);
+
+        for (int i = 0; i < 3; i++) {
+            MockFilterChain chain = new MockFilterChain();
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(new MockHttpServletRequest("GET", "/users/1"), response, chain);
+            assertEquals(HttpStatus.OK.value(), response.getStatus());
+            assertNotNull(chain.getRequest());
+        }
+    }
+
+    @Test
+    @DisplayName("doFilter() rejects with 503 when no permit frees up in time")
+    void doFilter_NoPermit_ReturnsServiceUnavailable() throws Exception {
+        DbAdmissionFilter filter = new DbAdmissionFilter(0, TIMEOUT, SHED_WAIT);
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/users/1"), response, chain);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), response.getStatus());
+        assertEquals("1", response.getHeader(HttpHeaders.RETRY_AFTER));
+        assertNull(chain.getRequest());
+    }
+
+    @Test
+    @DisplayName("doFilter() sheds with 429 at once while the average pool wait is too long")
+    void doFilter_LongAverageWait_ReturnsTooManyRequests() throws Exception {
+        DbAdmissionFilter filter = new DbAdmissionFilter(0, TIMEOUT, SHED_WAIT);
+        for (int i = 0; i < 20; i++) {
+            filter.doFilter(new MockHttpServletRequest("GET", "/users/1"),
+                    new MockHttpServletResponse(), new MockFilterChain());
+        }
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/users/1"), response, chain);
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), response.getStatus());
+        assertEquals("1", response.getHeader(HttpHeaders.RETRY_AFTER));
+        assertNull(chain.getRequest());
+    }
+
+    @Test
+    @DisplayName("Verify requests outside /users bypass admission")
+    void doFilter_OtherPath_Bypasses() throws Exception {
+        DbAdmissionFilter filter = new DbAdmissionFilter(0, TIMEOUT, SHED_WAIT);
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/actuator/health"), response, chain);
+
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+        assertNotNull(chain.getRequest());
+    }
+}
@@ -0,0 +1,97 @@
+package org.example.testassignmentcs.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class RateLimitFilterTest {
+    private static final double RATE = 0.5;
+    private static final int READ_BURST = 3;
+    private static final int WRITE_BURST = 1;
+    private static final long MAXIMUM_CLIENTS = 100;
+    private static final String PROXY = "10.0.0.1";
+
+    private final ClientResolver clientResolver = new ClientResolver(List.of(PROXY));
+    private final RateLimitFilter filter = new RateLimitFilter(
+            clientResolver, RATE, READ_BURST, RATE, WRITE_BURST, MAXIMUM_CLIENTS);
+
+    @Test
+    @DisplayName("Verify a client gets its burst and then 429 with Retry-After")
+    void doFilter_BurstUsedUp_ReturnsTooManyRequests() throws Exception {
+        for (int i = 0; i < READ_BURST; i++) {
+            assertEquals(HttpStatus.OK.value(), send("GET", "client-1").getStatus());
+        }
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request("GET", "client-1"), response, chain);
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), response.getStatus());
+        assertEquals("2", response.getHeader(HttpHeaders.RETRY_AFTER));
+        assertNull(chain.getRequest());
+        assertEquals(HttpStatus.OK.value(), send("GET", "client-2").getStatus());
+    }
+
+    @Test
+    @DisplayName("Verify reads and writes of a client are limited separately")
+    void doFilter_WritesUsedUp_StillServesReads() throws Exception {
+        assertEquals(HttpStatus.OK.value(), send("PUT", "client-1").getStatus());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), send("POST", "client-1").getStatus());
+
+        assertEquals(HttpStatus.OK.value(), send("GET", "client-1").getStatus());
+    }
+
+    @Test
+    @DisplayName("Clients beyond the maximum share one bucket instead of growing the map")
+    void doFilter_TooManyClients_SharesOverflowBucket() throws Exception {
+        RateLimitFilter smallFilter
+                = new RateLimitFilter(clientResolver, RATE, 1, RATE, WRITE_BURST, 1);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        smallFilter.doFilter(request("GET", "client-1"), response, new MockFilterChain());
+        smallFilter.doFilter(request("GET", "client-2"), response, new MockFilterChain());
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+        smallFilter.doFilter(request("GET", "client-3"), response, new MockFilterChain());
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), response.getStatus());
+    }
+
+    @Test
+    @DisplayName("A client id sent past the trusted proxies is ignored in favour of the address")
+    void doFilter_UntrustedClientId_LimitsByAddress() throws Exception {
+        MockHttpServletRequest request = request("PUT", "client-1");
+        request.setRemoteAddr("192.168.0.7");
+        assertEquals(HttpStatus.OK.value(), send(request).getStatus());
+
+        request = request("PUT", "client-2");
+        request.setRemoteAddr("192.168.0.7");
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), send(request).getStatus());
+        assertEquals(HttpStatus.OK.value(), send("PUT", "client-2").getStatus());
+    }
+
+    private MockHttpServletResponse send(String method, String clientId) throws Exception {
+        return send(request(method, clientId));
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    // as forwarded by the trusted proxy
+    private static MockHttpServletRequest request(String method, String clientId) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/users/1");
+        request.setRemoteAddr(PROXY);
+        request.addHeader("X-Client-Id", clientId);
+        return request;
+    }
+}
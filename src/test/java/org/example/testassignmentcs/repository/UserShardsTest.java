@@ -0,0 +1,221 @@
+package org.example.testassignmentcs.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.example.testassignmentcs.config.ReadWriteRoutingDataSource;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.transaction.PlatformTransactionManager;
+
+// three embedded H2 databases stand in for the shards; the rows each one holds are read
+// directly, so the test sees where the users were put
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:sharding_0",
+        "api.datasource.shard_urls=jdbc:h2:mem:sharding_1;DB_CLOSE_DELAY=-1,"
+                + "jdbc:h2:mem:sharding_2;DB_CLOSE_DELAY=-1"
+})
+@AutoConfigureMockMvc
+class UserShardsTest {
+    private static final int USERS = 12;
+    private static final int PAGE_SIZE = 5;
+    private static final String SEARCH_URL = "/users/search?from=1960-01-01&to=1969-12-31";
+    private static final String USER_BODY = """
+            {"email": "%s", "firstName": "John", "lastName": "Smith", "birthDate": "%s"}
+            """;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private UserShards userShards;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    @DisplayName("Users are spread over the shards and searches merge them in birth date order")
+    void search_ThreeShards_MergesPagesInBirthDateOrder() throws Exception {
+        List<String> bodies = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            bodies.add(USER_BODY.formatted("merge" + i + "@example.com",
+                    LocalDate.of(1960, 1, 1).plusMonths(i % 5)));
+        }
+        mockMvc.perform(post("/users/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + String.join(",", bodies) + "]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(USERS));
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int shard = 0; shard < userShards.count(); shard++) {
+            List<Map<String, Object>> shardRows = ReadWriteRoutingDataSource.onShard(shard,
+                    () -> jdbcTemplate.queryForList("SELECT id, email, birth_date FROM users "
+                            + "WHERE email LIKE 'merge%'"));
+            for (Map<String, Object> row : shardRows) {
+                assertEquals(shard, userShards.shardOf((Long) row.get("ID")));
+                assertEquals(shard, userShards.homeOf((String) row.get("EMAIL")));
+                mockMvc.perform(get("/users/" + row.get("ID")))
+                        .andExpect(status().isOk())
+                        .andExpect(jsonPath("$.email").value(row.get("EMAIL")));
+            }
+            rows.addAll(shardRows);
+        }
+        assertEquals(USERS, rows.size());
+        List<String> expected = rows.stream()
+                .sorted(Comparator.comparing((Map<String, Object> row) ->
+                                row.get("BIRTH_DATE").toString())
+                        .thenComparing(row -> (Long) row.get("ID")))
+                .map(row -> (String) row.get("EMAIL"))
+                .toList();
+
+        List<String> offsetPages = new ArrayList<>();
+        for (int page = 0; page * PAGE_SIZE < USERS; page++) {
+            offsetPages.addAll(emails(search("&page=" + page + "&size=" + PAGE_SIZE)));
+        }
+        assertEquals(expected, offsetPages);
+
+        List<String> cursorPages = new ArrayList<>();
+        String cursor = "";
+        while (cursor != null) {
+            JsonNode page = search("&size=" + PAGE_SIZE + "&cursor=" + cursor);
+            cursorPages.addAll(emails(page));
+            cursor = page.hasNonNull("nextCursor") ? page.get("nextCursor").asText() : null;
+        }
+        assertEquals(expected, cursorPages);
+
+        List<String> byEmail = expected.stream()
+                .sorted(Comparator.reverseOrder())
+                .toList();
+        assertEquals(byEmail.subList(PAGE_SIZE, 2 * PAGE_SIZE),
+                emails(search("&fields=email&sort=email,desc&page=1&size=" + PAGE_SIZE)));
+
+        String export = mockMvc.perform(get("/users/export?from=1960-01-01&to=1969-12-31"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(expected, export.lines()
+                .map(line -> readTree(line).get("email").asText())
+                .toList());
+    }
+
+    @Test
+    @DisplayName("An email moved to another shard stays unique until it is released")
+    void patchEmail_AcrossShards_KeepsEmailsUnique() throws Exception {
+        String ownerEmail = "owner@example.com";
+        String movedEmail = IntStream.range(0, 100)
+                .mapToObj(i -> "moved" + i + "@example.com")
+                .filter(email -> userShards.homeOf(email) != userShards.homeOf(ownerEmail))
+                .findFirst()
+                .orElseThrow();
+        String owner = create(ownerEmail).andExpect(status().isCreated())
+                .andReturn().getResponse().getHeader(HttpHeaders.LOCATION);
+        String other = create("other@example.com").andExpect(status().isCreated())
+                .andReturn().getResponse().getHeader(HttpHeaders.LOCATION);
+
+        mockMvc.perform(patch(owner)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\": \"" + movedEmail + "\"}"))
+                .andExpect(status().isAccepted());
+        create(movedEmail).andExpect(status().isBadRequest());
+        mockMvc.perform(put(other)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(USER_BODY.formatted(movedEmail, "1970-01-01")))
+                .andExpect(status().isBadRequest());
+        create(ownerEmail).andExpect(status().isCreated());
+
+        mockMvc.perform(delete(owner))
+                .andExpect(status().isNoContent());
+        create(movedEmail).andExpect(status().isCreated());
+    }
+
+    @Test
+    @DisplayName("A failed read of the first shard cancels the reads of the others")
+    void fanOut_FirstShardFails_CancelsOtherShards() throws Exception {
+        UserShards shards = new UserShards(List.of("shard-1", "shard-2"), 1,
+                Mockito.mock(PlatformTransactionManager.class),
+                Mockito.mock(EntityManagerFactory.class));
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch interrupted = new CountDownLatch(2);
+
+        try {
+            assertThrows(IllegalStateException.class, () -> shards.fanOut(shard -> {
+                if (shard == 0) {
+                    awaitQuietly(started);
+                    throw new IllegalStateException();
+                }
+                started.countDown();
+                try {
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return shard;
+            }));
+            assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        } finally {
+            shards.shutdown();
+        }
+    }
+
+    private ResultActions create(String email) throws Exception {
+        return mockMvc.perform(post("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(USER_BODY.formatted(email, "1970-01-01")));
+    }
+
+    private JsonNode search(String parameters) throws Exception {
+        return readTree(mockMvc.perform(get(SEARCH_URL + parameters))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+
+    private JsonNode readTree(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static List<String> emails(JsonNode page) {
+        List<String> emails = new ArrayList<>();
+        page.get("data").forEach(user -> emails.add(user.get("email").asText()));
+        return emails;
+    }
+}
@@ -0,0 +1,101 @@
+package org.example.testassignmentcs.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import org.example.testassignmentcs.repository.UserJdbcRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class BirthDateHistogramTest {
+    private static final int ADULT_AGE = 18;
+    private static final LocalDate TODAY = LocalDate.of(2024, 6, 1);
+
+    private final UserJdbcRepository userJdbcRepository = Mockito.mock(UserJdbcRepository.class);
+    private final BirthDateHistogram birthDateHistogram
+            = new BirthDateHistogram(userJdbcRepository);
+
+    @Test
+    @DisplayName("Verify the histogram loads the counts and follows later writes")
+    void birthYears_LoadedAndWritten_ReturnsCountsPerYear() {
+        doAnswer(invocationOnMock -> {
+            BiConsumer<LocalDate, Long> consumer = invocationOnMock.getArgument(0);
+            consumer.accept(LocalDate.of(1990, 1, 1), 2L);
+            consumer.accept(LocalDate.of(1990, 12, 31), 1L);
+            consumer.accept(LocalDate.of(1991, 5, 5), 1L);
+            return null;
+        }).when(userJdbcRepository).forEachBirthDateCount(any());
+
+        birthDateHistogram.afterSingletonsInstantiated();
+        birthDateHistogram.add(LocalDate.of(1985, 1, 1));
+        birthDateHistogram.move(LocalDate.of(1991, 5, 5), LocalDate.of(1990, 5, 5));
+        birthDateHistogram.remove(LocalDate.of(1990, 1, 1));
+
+        assertEquals(Map.of(1985, 1L, 1990, 3L), birthDateHistogram.birthYears());
+    }
+
+    @Test
+    @DisplayName("Verify ageBuckets() counts exact ages in buckets starting at the adult age")
+    void ageBuckets_Users_ReturnsBucketsFromAdultAge() {
+        birthDateHistogram.add(LocalDate.of(2006, 6, 2));
+        birthDateHistogram.add(LocalDate.of(2006, 6, 1));
+        birthDateHistogram.add(LocalDate.of(1996, 6, 2));
+        birthDateHistogram.add(LocalDate.of(1996, 6, 1));
+
+        assertEquals(Map.of("0-17", 1L, "18-27", 2L, "28-37", 1L),
+                birthDateHistogram.ageBuckets(TODAY, ADULT_AGE));
+    }
+
+    @Test
+    @DisplayName("The age buckets of a day follow later writes and are recounted the next day")
+    void ageBuckets_WrittenAfterCount_FollowsWritesAndDays() {
+        birthDateHistogram.add(LocalDate.of(2006, 6, 2));
+        birthDateHistogram.ageBuckets(TODAY, ADULT_AGE);
+
+        birthDateHistogram.add(LocalDate.of(1996, 6, 1));
+        birthDateHistogram.move(LocalDate.of(2006, 6, 2), LocalDate.of(2006, 6, 3));
+
+        assertEquals(Map.of("0-17", 1L, "28-37", 1L),
+                birthDateHistogram.ageBuckets(TODAY, ADULT_AGE));
+        assertEquals(Map.of("0-17", 1L, "28-37", 1L),
+                birthDateHistogram.ageBuckets(TODAY.plusDays(1), ADULT_AGE));
+        assertEquals(Map.of("18-27", 1L, "28-37", 1L),
+                birthDateHistogram.ageBuckets(TODAY.plusDays(2), ADULT_AGE));
+    }
+
+    @Test
+    @DisplayName("Writes inside a transaction are counted after the commit and never on rollback")
+    void birthYears_WrittenInTransaction_CountedOnlyAfterCommit() {
+        birthDateHistogram.add(LocalDate.of(1990, 1, 1));
+        List<TransactionSynchronization> committed = inTransaction(() -> birthDateHistogram
+                .move(LocalDate.of(1990, 1, 1), LocalDate.of(1991, 1, 1)));
+        List<TransactionSynchronization> rolledBack = inTransaction(() -> birthDateHistogram
+                .add(LocalDate.of(1992, 1, 1)));
+
+        assertEquals(Map.of(1990, 1L), birthDateHistogram.birthYears());
+
+        committed.forEach(TransactionSynchronization::afterCommit);
+        rolledBack.forEach(synchronization -> synchronization.afterCompletion(
+                TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertEquals(Map.of(1991, 1L), birthDateHistogram.birthYears());
+    }
+
+    private static List<TransactionSynchronization> inTransaction(Runnable write) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            write.run();
+            return TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+}
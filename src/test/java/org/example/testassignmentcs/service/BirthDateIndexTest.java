@@ -0,0 +1,182 @@
+package org.example.testassignmentcs.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BiConsumer;
+import org.example.testassignmentcs.model.User;
+import org.example.testassignmentcs.repository.UserJdbcRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class BirthDateIndexTest {
+    private static final LocalDate FROM_DATE = LocalDate.of(1990, 1, 1);
+    private static final LocalDate TO_DATE = LocalDate.of(1999, 12, 31);
+    // four keys in one block with its table entry, and the 16 slots of the id table
+    private static final long MEMORY_BYTES = 4 * Long.BYTES + Long.BYTES + 16 * 3 * Long.BYTES;
+
+    private final UserJdbcRepository userJdbcRepository = Mockito.mock(UserJdbcRepository.class);
+    private final BirthDateIndex birthDateIndex = new BirthDateIndex(userJdbcRepository, true);
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocationOnMock -> {
+            BiConsumer<Long, LocalDate> consumer = invocationOnMock.getArgument(0);
+            consumer.accept(4L, LocalDate.of(1985, 5, 5));
+            consumer.accept(3L, LocalDate.of(1993, 3, 3));
+            consumer.accept(1L, LocalDate.of(1991, 1, 1));
+            consumer.accept(2L, LocalDate.of(1991, 1, 1));
+            return null;
+        }).when(userJdbcRepository).forEachBirthDate(any());
+    }
+
+    @Test
+    @DisplayName("Verify findIds() pages through the range in birth date and id order")
+    void findIds_Loaded_ReturnsPagesInKeysetOrder() {
+        birthDateIndex.load();
+
+        assertTrue(birthDateIndex.isReady());
+        assertEquals(List.of(1L, 2L), birthDateIndex.findIds(FROM_DATE, TO_DATE, 0, 2));
+        assertEquals(List.of(3L), birthDateIndex.findIds(FROM_DATE, TO_DATE, 2, 2));
+        assertEquals(List.of(), birthDateIndex.findIds(FROM_DATE, TO_DATE, 4, 2));
+        assertEquals(List.of(2L, 3L), birthDateIndex.findIdsAfter(
+                FROM_DATE, TO_DATE, LocalDate.of(1991, 1, 1), 1L, 10));
+        assertEquals(MEMORY_BYTES, birthDateIndex.memoryBytes());
+    }
+
+    @Test
+    @DisplayName("Verify add(), put() and remove() keep the index in line with the table")
+    void findIds_AfterWrites_ReflectsWrites() {
+        birthDateIndex.load();
+
+        birthDateIndex.add(List.of(new User().setId(5L).setBirthDate(LocalDate.of(1990, 6, 6))));
+        birthDateIndex.put(4L, LocalDate.of(1995, 5, 5));
+        birthDateIndex.put(1L, LocalDate.of(1980, 1, 1));
+        birthDateIndex.remove(List.of(2L));
+
+        assertEquals(List.of(5L, 3L, 4L), birthDateIndex.findIds(FROM_DATE, TO_DATE, 0, 10));
+        assertEquals(LocalDate.of(1980, 1, 1), birthDateIndex.findBirthDate(1L));
+        assertNull(birthDateIndex.findBirthDate(2L));
+        assertEquals(MEMORY_BYTES, birthDateIndex.memoryBytes());
+    }
+
+    @Test
+    @DisplayName("Moves are applied in version order and never bring back a deleted user")
+    void put_CommittedOutOfOrder_KeepsLatestWrite() {
+        birthDateIndex.load();
+
+        List<TransactionSynchronization> older = inTransaction(
+                () -> birthDateIndex.put(1L, LocalDate.of(1992, 2, 2)));
+        List<TransactionSynchronization> newer = inTransaction(
+                () -> birthDateIndex.put(1L, LocalDate.of(1994, 4, 4)));
+        long copiedBytes = birthDateIndex.copiedBytes();
+        commit(newer);
+        // the one block and its table entry
+        assertEquals(4 * Long.BYTES + Long.BYTES, birthDateIndex.copiedBytes() - copiedBytes);
+        commit(older);
+        List<TransactionSynchronization> stale = inTransaction(
+                () -> birthDateIndex.put(2L, LocalDate.of(1996, 6, 6)));
+        birthDateIndex.remove(List.of(2L));
+        commit(stale);
+
+        assertEquals(List.of(3L, 1L), birthDateIndex.findIds(FROM_DATE, TO_DATE, 0, 10));
+    }
+
+    @Test
+    @DisplayName("Users added before the load are kept and a rolled back insert is taken out")
+    void load_AddedBeforeLoad_KeepsAddedUsers() {
+        birthDateIndex.add(List.of(new User().setId(5L).setBirthDate(LocalDate.of(1990, 6, 6))));
+        List<TransactionSynchronization> rolledBack = inTransaction(() -> birthDateIndex.add(
+                List.of(new User().setId(6L).setBirthDate(LocalDate.of(1990, 7, 7)))));
+        birthDateIndex.load();
+        rolledBack.forEach(synchronization -> synchronization.afterCompletion(
+                TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertEquals(List.of(5L, 1L, 2L, 3L), birthDateIndex.findIds(FROM_DATE, TO_DATE, 0, 10));
+    }
+
+    @Test
+    @DisplayName("Blocks split, merge and shrink without losing the keyset order")
+    void findIds_ManyRandomWrites_MatchesSortedUsers() {
+        Random random = new Random(42);
+        Map<Long, LocalDate> users = new HashMap<>();
+        for (long id = 1; id <= 5_000; id++) {
+            users.put(id, FROM_DATE.plusDays(random.nextInt(3_650)));
+        }
+        doAnswer(invocationOnMock -> {
+            BiConsumer<Long, LocalDate> consumer = invocationOnMock.getArgument(0);
+            users.forEach(consumer);
+            return null;
+        }).when(userJdbcRepository).forEachBirthDate(any());
+        birthDateIndex.load();
+
+        for (int i = 0; i < 20_000; i++) {
+            long id = 1 + random.nextInt(6_000);
+            LocalDate birthDate = FROM_DATE.plusDays(random.nextInt(3_650));
+            if (!users.containsKey(id)) {
+                birthDateIndex.add(List.of(new User().setId(id).setBirthDate(birthDate)));
+                users.put(id, birthDate);
+            } else if (random.nextInt(3) == 0) {
+                birthDateIndex.remove(List.of(id));
+                users.remove(id);
+            } else {
+                birthDateIndex.put(id, birthDate);
+                users.put(id, birthDate);
+            }
+        }
+
+        List<Long> expected = users.entrySet().stream()
+                .sorted(Map.Entry.<Long, LocalDate>comparingByValue()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .toList();
+        assertEquals(expected, birthDateIndex.findIds(FROM_DATE, TO_DATE, 0, users.size() + 1));
+        assertEquals(expected.subList(1_000, 1_500),
+                birthDateIndex.findIds(FROM_DATE, TO_DATE, 1_000, 500));
+        users.forEach((id, birthDate) ->
+                assertEquals(birthDate, birthDateIndex.findBirthDate(id)));
+    }
+
+    @Test
+    @DisplayName("The index stays unused and unloaded when it is disabled")
+    void isReady_Disabled_ReturnsFalse() {
+        BirthDateIndex disabledIndex = new BirthDateIndex(userJdbcRepository, false);
+
+        disabledIndex.load();
+        disabledIndex.put(1L, FROM_DATE);
+
+        assertFalse(disabledIndex.isReady());
+        assertEquals(0, disabledIndex.memoryBytes());
+        verify(userJdbcRepository, never()).forEachBirthDate(any());
+    }
+
+    private static List<TransactionSynchronization> inTransaction(Runnable write) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            write.run();
+            return TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static void commit(List<TransactionSynchronization> synchronizations) {
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(
+                TransactionSynchronization.STATUS_COMMITTED));
+    }
+}
@@ -0,0 +1,92 @@
+package org.example.testassignmentcs.service;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+import java.util.function.Consumer;
+import org.example.testassignmentcs.repository.UserJdbcRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class EmailBloomFilterTest {
+    private static final int EXPECTED_INSERTIONS = 10_000;
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    private final UserJdbcRepository userJdbcRepository = Mockito.mock(UserJdbcRepository.class);
+    private final EmailBloomFilter emailFilter = new EmailBloomFilter(
+            userJdbcRepository,
+            EXPECTED_INSERTIONS,
+            FALSE_POSITIVE_PROBABILITY
+    );
+
+    @Test
+    @DisplayName("mightContain() can`t rule anything out before the filter is loaded")
+    void mightContain_NotLoaded_ReturnsTrue() {
+        assertTrue(emailFilter.mightContain("john@example.com"));
+    }
+
+    @Test
+    @DisplayName("Verify rebuild() loads every registered email and put() adds new ones")
+    void mightContain_LoadedAndPutEmails_ReturnsTrue() {
+        doAnswer(invocationOnMock -> {
+            Consumer<String> consumer = invocationOnMock.getArgument(0);
+            consumer.accept("john@example.com");
+            return null;
+        }).when(userJdbcRepository).forEachEmail(any());
+
+        emailFilter.rebuild();
+        emailFilter.put("David@Example.com");
+
+        assertTrue(emailFilter.mightContain("john@example.com"));
+        assertTrue(emailFilter.mightContain("david@example.com"));
+        assertFalse(emailFilter.mightContain("kate@example.com"));
+    }
+
+    @Test
+    @DisplayName("Verify a put just before a rebuild survives a scan that misses its row")
+    void mightContain_PutBeforeRebuildCommittedAfterScan_ReturnsTrue() {
+        emailFilter.rebuild();
+        emailFilter.put("late@example.com");
+        doAnswer(invocationOnMock -> {
+            emailFilter.put("during@example.com");
+            return null;
+        }).when(userJdbcRepository).forEachEmail(any());
+
+        emailFilter.rebuild();
+
+        assertTrue(emailFilter.mightContain("late@example.com"));
+        assertTrue(emailFilter.mightContain("during@example.com"));
+    }
+
+    @Test
+    @DisplayName("Verify a deleted email leaves the filter after two rebuilds")
+    void mightContain_EmailGoneForTwoRebuilds_ReturnsFalse() {
+        emailFilter.put("deleted@example.com");
+
+        emailFilter.rebuild();
+        assertTrue(emailFilter.mightContain("deleted@example.com"));
+        emailFilter.rebuild();
+        assertFalse(emailFilter.mightContain("deleted@example.com"));
+    }
+
+    @Test
+    @DisplayName("Verify false positive rate stays close to the configured probability")
+    void mightContain_AbsentEmails_FalsePositiveRateWithinBounds() {
+        emailFilter.rebuild();
+        for (int i = 0; i < EXPECTED_INSERTIONS; i++) {
+            emailFilter.put("user" + i + "@example.com");
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < EXPECTED_INSERTIONS; i++) {
+            assertTrue(emailFilter.mightContain("user" + i + "@example.com"));
+            if (emailFilter.mightContain("absent" + i + "@example.com")) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < EXPECTED_INSERTIONS * FALSE_POSITIVE_PROBABILITY * 2,
+                "False positives: " + falsePositives);
+    }
+}
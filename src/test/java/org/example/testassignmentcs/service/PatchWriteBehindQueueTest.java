@@ -0,0 +1,214 @@
+package org.example.testassignmentcs.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.example.testassignmentcs.model.User;
+import org.example.testassignmentcs.repository.UserJdbcRepository;
+import org.example.testassignmentcs.repository.UserShards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+class PatchWriteBehindQueueTest {
+    private static final int CAPACITY = 2;
+    private static final int BATCH_SIZE = 10;
+
+    private final UserJdbcRepository userJdbcRepository = Mockito.mock(UserJdbcRepository.class);
+    private final UserCache userCache = Mockito.mock(UserCache.class);
+    private final BirthDateIndex birthDateIndex = Mockito.mock(BirthDateIndex.class);
+    private final BirthDateHistogram birthDateHistogram = Mockito.mock(BirthDateHistogram.class);
+    private final TransactionTemplate transactionTemplate
+            = new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class));
+    private final UserShards userShards = new UserShards(
+            List.of(), 1, Mockito.mock(PlatformTransactionManager.class), null);
+    private final PatchWriteBehindQueue patchQueue = new PatchWriteBehindQueue(
+            userJdbcRepository,
+            new Patcher(),
+            userCache,
+            birthDateIndex,
+            birthDateHistogram,
+            new UserDataVersion(),
+            userShards,
+            transactionTemplate,
+            true,
+            CAPACITY,
+            BATCH_SIZE
+    );
+
+    @BeforeEach
+    void setUp() {
+        when(userJdbcRepository.patchAll(any())).thenAnswer(invocation -> {
+            int[] updateCounts = new int[invocation.<List<User>>getArgument(0).size()];
+            Arrays.fill(updateCounts, 1);
+            return updateCounts;
+        });
+    }
+
+    @Test
+    @DisplayName("Verify PATCHes for the same user are merged into one row write")
+    @SuppressWarnings("unchecked")
+    void flush_SameIdPatchedTwice_WritesMergedPatch() {
+        assertTrue(patchQueue.offer(1L, new User().setFirstName("David").setLastName("Davis")));
+        assertTrue(patchQueue.offer(1L, new User().setFirstName("Dave")));
+
+        patchQueue.flush();
+
+        ArgumentCaptor<List<User>> batch = ArgumentCaptor.forClass(List.class);
+        verify(userJdbcRepository, times(1)).patchAll(batch.capture());
+        assertEquals(List.of(new User().setId(1L).setFirstName("Dave").setLastName("Davis")),
+                batch.getValue());
+        verify(userCache, times(1)).invalidate(1L);
+        assertEquals(0, patchQueue.size());
+        assertEquals(2.0, patchQueue.coalescingRatio());
+    }
+
+    @Test
+    @DisplayName("offer() refuses new users once the queue is full")
+    void offer_QueueFull_ReturnsFalse() {
+        assertTrue(patchQueue.offer(1L, new User().setFirstName("John")));
+        assertTrue(patchQueue.offer(2L, new User().setFirstName("David")));
+
+        assertFalse(patchQueue.offer(3L, new User().setFirstName("Kate")));
+        assertTrue(patchQueue.offer(2L, new User().setLastName("Davis")));
+
+        patchQueue.flush();
+        assertTrue(patchQueue.offer(3L, new User().setFirstName("Kate")));
+    }
+
+    @Test
+    @DisplayName("Verify a failing row doesn`t drop the rest of the batch")
+    void flush_OneRowFails_WritesTheOthers() {
+        User duplicate = new User().setEmail("taken@example.com");
+        User valid = new User().setFirstName("David");
+        patchQueue.offer(1L, duplicate);
+        patchQueue.offer(2L, valid);
+
+        doThrow(new DuplicateKeyException("uk_users_email"))
+                .doThrow(new DuplicateKeyException("uk_users_email"))
+                .doReturn(new int[] {1})
+                .when(userJdbcRepository).patchAll(any());
+
+        patchQueue.flush();
+
+        verify(userJdbcRepository, times(1)).patchAll(List.of(valid));
+        verify(userCache, times(1)).invalidate(2L);
+    }
+
+    @Test
+    @DisplayName("Verify flush() moves users whose birth date was patched")
+    void flush_BirthDatePatched_MovesUser() {
+        LocalDate oldBirthDate = LocalDate.of(1990, 1, 1);
+        LocalDate newBirthDate = LocalDate.of(1991, 1, 1);
+        patchQueue.offer(1L, new User().setBirthDate(newBirthDate));
+        patchQueue.offer(2L, new User().setFirstName("David"));
+
+        when(userJdbcRepository.findBirthDatesForUpdate(List.of(1L)))
+                .thenReturn(Map.of(1L, oldBirthDate));
+
+        patchQueue.flush();
+
+        verify(birthDateHistogram, times(1)).move(oldBirthDate, newBirthDate);
+        verify(birthDateIndex, times(1)).put(1L, newBirthDate);
+        verify(birthDateIndex, never()).put(eq(2L), any());
+    }
+
+    @Test
+    @DisplayName("Verify a PATCH of a user deleted meanwhile is counted as failed")
+    void flush_UserMissing_CountsFailed() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        patchQueue.bindTo(registry);
+        patchQueue.offer(1L, new User().setFirstName("John"));
+        patchQueue.offer(2L, new User().setFirstName("David"));
+
+        doReturn(new int[] {1, 0}).when(userJdbcRepository).patchAll(any());
+
+        patchQueue.flush();
+
+        assertEquals(1.0, registry.get("users.patch.queue.written").functionCounter().count());
+        assertEquals(1.0, registry.get("users.patch.queue.failed").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Verify overwrite() drops the PATCHes still queued for its users")
+    void overwrite_PatchQueued_DropsPatch() {
+        patchQueue.offer(1L, new User().setFirstName("John"));
+        patchQueue.offer(2L, new User().setFirstName("David"));
+
+        assertEquals("put", patchQueue.overwrite(List.of(1L), () -> "put"));
+        patchQueue.flush();
+
+        verify(userJdbcRepository, times(1)).patchAll(List.of(
+                new User().setId(2L).setFirstName("David")));
+        assertEquals(0, patchQueue.size());
+    }
+
+    @Test
+    @DisplayName("Verify a synchronous write waits for the user`s PATCH in flight")
+    void writeThrough_PatchInFlight_WaitsForFlush() throws Exception {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            flushing.countDown();
+            release.await();
+            return new int[] {1};
+        }).when(userJdbcRepository).patchAll(any());
+        patchQueue.offer(1L, new User().setFirstName("John"));
+        Thread flusher = new Thread(patchQueue::flush);
+        flusher.start();
+        assertTrue(flushing.await(10, TimeUnit.SECONDS));
+
+        AtomicBoolean written = new AtomicBoolean();
+        Thread writer = new Thread(() -> patchQueue.writeThrough(1L, () -> {
+            written.set(true);
+            return null;
+        }));
+        writer.start();
+        while (writer.getState() != Thread.State.WAITING
+                && writer.getState() != Thread.State.TERMINATED) {
+            Thread.onSpinWait();
+        }
+        assertFalse(written.get());
+
+        release.countDown();
+        flusher.join();
+        writer.join();
+        assertTrue(written.get());
+    }
+
+    @Test
+    @DisplayName("offer() doesn`t queue anything when write-behind is disabled")
+    void offer_Disabled_ReturnsFalse() {
+        PatchWriteBehindQueue disabledQueue = new PatchWriteBehindQueue(
+                userJdbcRepository, new Patcher(), userCache, birthDateIndex, birthDateHistogram,
+                new UserDataVersion(), userShards, transactionTemplate, false, CAPACITY,
+                BATCH_SIZE);
+
+        assertFalse(disabledQueue.offer(1L, new User().setFirstName("John")));
+        disabledQueue.flush();
+        verify(userJdbcRepository, never()).patchAll(any());
+    }
+}
@@ -5,6 +5,8 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.time.LocalDate;
+import java.util.List;
+import org.example.testassignmentcs.dto.UserCreateRequestDto;
 import org.example.testassignmentcs.dto.UserDto;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -93,4 +95,34 @@ class PatcherTest {
                 () -> patcher.internPatcher(null, incompleteUserDto));
         assertEquals(PATCH_EXCEPTION_MESSAGE, exception.getMessage());
     }
+
+    @Test
+    @DisplayName("Verify internPatcher() method reports only the fields it changed")
+    void internPatcher_PatchWithSameAndNewValues_ReturnsChangedFields() {
+        UserDto patch = new UserDto()
+                .setEmail(existingUserDto.getEmail())
+                .setFirstName("Dave")
+                .setPhoneNumber("0507377711");
+
+        List<String> changedFields = patcher.internPatcher(existingUserDto, patch);
+
+        assertEquals(List.of("firstName", "phoneNumber"), changedFields);
+        assertEquals("Dave", existingUserDto.getFirstName());
+        assertEquals(List.of(), patcher.internPatcher(existingUserDto, patch));
+    }
+
+    @Test
+    @DisplayName("Verify internPatcher() method works for other DTO types")
+    void internPatcher_UserCreateRequestDto_Ok() {
+        UserCreateRequestDto existing = new UserCreateRequestDto()
+                .setEmail("john@example.com")
+                .setFirstName("John");
+
+        List<String> changedFields = patcher.internPatcher(
+                existing, new UserCreateRequestDto().setFirstName("Dave"));
+
+        assertEquals(List.of("firstName"), changedFields);
+        assertEquals("john@example.com", existing.getEmail());
+        assertEquals("Dave", existing.getFirstName());
+    }
 }
@@ -0,0 +1,104 @@
+package org.example.testassignmentcs.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.example.testassignmentcs.dto.UserDto;
+import org.example.testassignmentcs.mapper.UserMapper;
+import org.example.testassignmentcs.model.User;
+import org.example.testassignmentcs.repository.UserRepository;
+import org.example.testassignmentcs.repository.UserShards;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class UserCacheTest {
+    private static final long MAXIMUM_SIZE = 100;
+    private static final Duration EXPIRE_AFTER_WRITE = Duration.ofMinutes(10);
+    private static final int CONCURRENT_READERS = 8;
+
+    private final UserRepository userRepository = Mockito.mock(UserRepository.class);
+    private final UserMapper userMapper = Mockito.mock(UserMapper.class);
+    private final UserCache userCache = new UserCache(
+            userRepository,
+            userMapper,
+            new UserShards(List.of(), 1, Mockito.mock(PlatformTransactionManager.class), null),
+            MAXIMUM_SIZE,
+            EXPIRE_AFTER_WRITE
+    );
+
+    @Test
+    @DisplayName("Verify get() loads a user once and invalidate() forces a reload")
+    void get_CachedAndInvalidated_LoadsTwice() {
+        User user = new User().setId(1L);
+        UserDto userDto = new UserDto().setId(1L);
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(userMapper.toDto(user)).thenReturn(userDto);
+
+        assertEquals(userDto, userCache.get(1L));
+        assertEquals(userDto, userCache.get(1L));
+        userCache.invalidate(1L);
+        assertEquals(userDto, userCache.get(1L));
+
+        verify(userRepository, times(2)).findById(1L);
+        assertEquals(1, userCache.stats().hitCount());
+        assertEquals(2, userCache.stats().missCount());
+    }
+
+    @Test
+    @DisplayName("get() doesn`t cache a missing user")
+    void get_MissingUser_ReturnsNullAndRetries() {
+        when(userRepository.findById(1L)).thenReturn(Optional.empty());
+
+        assertNull(userCache.get(1L));
+        assertNull(userCache.get(1L));
+
+        verify(userRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    @DisplayName("Verify concurrent misses for the same id share one load")
+    void get_ConcurrentMisses_LoadsOnce() throws Exception {
+        User user = new User().setId(1L);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        when(userRepository.findById(1L)).thenAnswer(invocationOnMock -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(user);
+        });
+        when(userMapper.toDto(user)).thenReturn(new UserDto().setId(1L));
+
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_READERS);
+        try {
+            List<CompletableFuture<UserDto>> readers = new ArrayList<>();
+            for (int i = 0; i < CONCURRENT_READERS; i++) {
+                readers.add(CompletableFuture.supplyAsync(() -> userCache.get(1L), executor));
+            }
+            loading.await(5, TimeUnit.SECONDS);
+            release.countDown();
+            for (CompletableFuture<UserDto> reader : readers) {
+                assertEquals(1L, reader.get(5, TimeUnit.SECONDS).getId());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(userRepository, times(1)).findById(1L);
+    }
+}
@@ -0,0 +1,61 @@
+package org.example.testassignmentcs.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import jakarta.persistence.EntityManagerFactory;
+import java.util.List;
+import org.example.testassignmentcs.repository.UserJdbcRepository;
+import org.example.testassignmentcs.repository.UserShards;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class UserIdAllocatorTest {
+    private static final int ALLOCATION_SIZE = 3;
+
+    private final UserJdbcRepository userJdbcRepository = Mockito.mock(UserJdbcRepository.class);
+    private final PlatformTransactionManager transactionManager
+            = Mockito.mock(PlatformTransactionManager.class);
+    private final UserIdAllocator userIdAllocator = new UserIdAllocator(userJdbcRepository,
+            new UserShards(List.of(), 1, transactionManager, null), ALLOCATION_SIZE);
+
+    @Test
+    @DisplayName("Verify next() serves ids from one block until it runs out")
+    void next_SmallRequests_ReusesBlock() {
+        when(userJdbcRepository.allocateIds(ALLOCATION_SIZE)).thenReturn(1L, 51L);
+
+        assertEquals(List.of(1L, 2L), userIdAllocator.next(0, 2));
+        assertEquals(List.of(3L, 51L), userIdAllocator.next(0, 2));
+
+        verify(userJdbcRepository, times(2)).allocateIds(ALLOCATION_SIZE);
+    }
+
+    @Test
+    @DisplayName("A request larger than a block takes one block of its own size")
+    void next_LargeRequest_AllocatesOnce() {
+        when(userJdbcRepository.allocateIds(5)).thenReturn(10L);
+
+        assertEquals(List.of(10L, 11L, 12L, 13L, 14L), userIdAllocator.next(0, 5));
+        assertEquals(List.of(), userIdAllocator.next(0, 0));
+    }
+
+    @Test
+    @DisplayName("Every shard counts its own blocks and its ids point back to the shard")
+    void next_Sharded_InterleavesIdsByShard() {
+        UserShards userShards = new UserShards(List.of("shard-1", "shard-2"), 1,
+                transactionManager, Mockito.mock(EntityManagerFactory.class));
+        UserIdAllocator shardedAllocator
+                = new UserIdAllocator(userJdbcRepository, userShards, ALLOCATION_SIZE);
+        when(userJdbcRepository.allocateIds(ALLOCATION_SIZE)).thenReturn(1L, 7L);
+
+        assertEquals(List.of(3L, 6L), shardedAllocator.next(0, 2));
+        assertEquals(List.of(23L), shardedAllocator.next(2, 1));
+        assertEquals(List.of(1, 2), List.of(userShards.shardOf(7L), userShards.shardOf(23L)));
+
+        verify(userJdbcRepository, times(2)).allocateIds(ALLOCATION_SIZE);
+    }
+}
@@ -0,0 +1,124 @@
+package org.example.testassignmentcs.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+class InMemoryIdempotencyStoreTest {
+    private static final long MAXIMUM_SIZE = 100;
+    private static final Duration TTL = Duration.ofHours(1);
+    private static final Duration WAIT = Duration.ofMillis(200);
+    private static final String CLIENT = "10.0.0.1";
+    private static final String KEY = "retry-1";
+    private static final String FINGERPRINT = "fingerprint-1";
+
+    private final InMemoryIdempotencyStore idempotencyStore
+            = new InMemoryIdempotencyStore(MAXIMUM_SIZE, TTL, WAIT);
+    private final AtomicInteger creations = new AtomicInteger();
+
+    @Test
+    @DisplayName("Verify a repeated key returns the first id without creating again")
+    void computeIfAbsent_RepeatedKey_CreatesOnce() {
+        assertEquals(1L, idempotencyStore.computeIfAbsent(CLIENT, KEY, FINGERPRINT, this::create));
+        assertEquals(1L, idempotencyStore.computeIfAbsent(CLIENT, KEY, FINGERPRINT, this::create));
+        assertEquals(2L, idempotencyStore.computeIfAbsent(
+                CLIENT, "retry-2", FINGERPRINT, this::create));
+
+        assertEquals(2, creations.get());
+    }
+
+    @Test
+    @DisplayName("The same key sent by another client is a request of its own")
+    void computeIfAbsent_OtherClient_CreatesAgain() {
+        assertEquals(1L, idempotencyStore.computeIfAbsent(CLIENT, KEY, FINGERPRINT, this::create));
+        assertEquals(2L, idempotencyStore.computeIfAbsent(
+                "10.0.0.2", KEY, "fingerprint-2", this::create));
+
+        assertEquals(2, creations.get());
+    }
+
+    @Test
+    @DisplayName("A key reused for a different request is rejected")
+    void computeIfAbsent_DifferentRequest_ThrowsException() {
+        idempotencyStore.computeIfAbsent(CLIENT, KEY, FINGERPRINT, this::create);
+
+        assertThrows(IllegalArgumentException.class, () -> idempotencyStore.computeIfAbsent(
+                CLIENT, KEY, "fingerprint-2", this::create));
+        assertEquals(1, creations.get());
+    }
+
+    @Test
+    @DisplayName("A failed request is forgotten, so its retry runs again")
+    void computeIfAbsent_FailedRequest_RunsRetry() {
+        assertThrows(IllegalStateException.class,
+                () -> idempotencyStore.computeIfAbsent(CLIENT, KEY, FINGERPRINT, () -> {
+                    throw new IllegalStateException();
+                }));
+
+        assertEquals(1L, idempotencyStore.computeIfAbsent(CLIENT, KEY, FINGERPRINT, this::create));
+    }
+
+    @Test
+    @DisplayName("A request failing with an Error is forgotten too, so its retry runs again")
+    void computeIfAbsent_RequestFailsWithError_RunsRetry() {
+        assertThrows(AssertionError.class,
+                () -> idempotencyStore.computeIfAbsent(CLIENT, KEY, FINGERPRINT, () -> {
+                    throw new AssertionError();
+                }));
+
+        assertEquals(1L, idempotencyStore.computeIfAbsent(CLIENT, KEY, FINGERPRINT, this::create));
+    }
+
+    @Test
+    @DisplayName("A repeat waits a bounded time for the first request and then gets a 409")
+    void computeIfAbsent_SlowFirstRequest_RepeatConflicts() {
+        AtomicReference<ResponseStatusException> conflict = new AtomicReference<>();
+
+        // the repeat runs while the first request is still creating, so it can only time out
+        Long first = idempotencyStore.computeIfAbsent(CLIENT, KEY, FINGERPRINT, () -> {
+            conflict.set(assertThrows(ResponseStatusException.class,
+                    () -> idempotencyStore.computeIfAbsent(
+                            CLIENT, KEY, FINGERPRINT, this::create)));
+            return create();
+        });
+
+        assertEquals(HttpStatus.CONFLICT, conflict.get().getStatusCode());
+        assertEquals(1L, first);
+        assertEquals(1L, idempotencyStore.computeIfAbsent(CLIENT, KEY, FINGERPRINT, this::create));
+        assertEquals(1, creations.get());
+    }
+
+    @Test
+    @DisplayName("A repeat arriving while the first request runs waits for its id")
+    void computeIfAbsent_InFlightRepeat_WaitsForFirst() throws Exception {
+        AtomicReference<Long> repeated = new AtomicReference<>();
+        Thread repeat = new Thread(() -> repeated.set(
+                idempotencyStore.computeIfAbsent(CLIENT, KEY, FINGERPRINT, this::create)));
+
+        // the first request only finishes once the repeat is parked on its pending result
+        Long first = idempotencyStore.computeIfAbsent(CLIENT, KEY, FINGERPRINT, () -> {
+            repeat.start();
+            while (repeat.getState() != Thread.State.WAITING
+                    && repeat.getState() != Thread.State.TERMINATED) {
+                Thread.onSpinWait();
+            }
+            return create();
+        });
+        repeat.join();
+
+        assertEquals(1L, first);
+        assertEquals(1L, repeated.get());
+        assertEquals(1, creations.get());
+    }
+
+    private Long create() {
+        return (long) creations.incrementAndGet();
+    }
+}
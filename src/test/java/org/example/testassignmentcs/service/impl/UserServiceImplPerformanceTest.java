@@ -0,0 +1,85 @@
+package org.example.testassignmentcs.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import jakarta.validation.Validator;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import org.example.testassignmentcs.dto.UserCreateRequestDto;
+import org.example.testassignmentcs.repository.UserRepository;
+import org.example.testassignmentcs.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest
+@Tag("performance")
+class UserServiceImplPerformanceTest {
+    private static final int WARM_UP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 3;
+    private static final int USERS_PER_ITERATION = 5_000;
+    private static final double MIN_SPEEDUP
+            = Double.parseDouble(System.getProperty("performance.batch.min_speedup", "4.0"));
+
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private Validator validator;
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    @DisplayName("saveAll() is several times faster than save() per user on H2")
+    void saveAll_ComparedToSave_IsFasterPerUser() {
+        long singleNanos = bestNanosPerUser("single", requestDtos -> requestDtos.forEach(
+                requestDto -> {
+                    validator.validate(requestDto);
+                    userService.save(requestDto);
+                }));
+        long batchNanos = bestNanosPerUser("batch", requestDtos -> assertEquals(
+                USERS_PER_ITERATION,
+                userService.saveAll(requestDtos.iterator()).getCreated()));
+
+        double speedup = (double) singleNanos / batchNanos;
+        assertTrue(speedup >= MIN_SPEEDUP, "Expected at least " + MIN_SPEEDUP
+                + "x speedup, got " + speedup + "x (save: " + singleNanos
+                + " ns/user, saveAll: " + batchNanos + " ns/user)");
+    }
+
+    private long bestNanosPerUser(String prefix, Consumer<List<UserCreateRequestDto>> path) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < WARM_UP_ITERATIONS + MEASURED_ITERATIONS; i++) {
+            List<UserCreateRequestDto> requestDtos = requests(prefix + i);
+            long start = System.nanoTime();
+            path.accept(requestDtos);
+            long elapsed = (System.nanoTime() - start) / USERS_PER_ITERATION;
+            if (i >= WARM_UP_ITERATIONS) {
+                best = Math.min(best, elapsed);
+            }
+        }
+        return best;
+    }
+
+    private List<UserCreateRequestDto> requests(String prefix) {
+        return IntStream.range(0, USERS_PER_ITERATION)
+                .mapToObj(i -> new UserCreateRequestDto()
+                        .setEmail(prefix + "-" + i + "@example.com")
+                        .setFirstName("John")
+                        .setLastName("Smith")
+                        .setBirthDate(LocalDate.of(1990, 1, 1).plusDays(i % 3650))
+                        .setAddress("Baker Street")
+                        .setPhoneNumber("0679876543"))
+                .toList();
+    }
+}
@@ -2,17 +2,39 @@ package org.example.testassignmentcs.service.impl;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import jakarta.persistence.Tuple;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import org.example.testassignmentcs.dto.BatchDeleteResultDto;
+import org.example.testassignmentcs.dto.BatchItemResultDto;
+import org.example.testassignmentcs.dto.BatchResultDto;
+import org.example.testassignmentcs.dto.BirthYearStatsDto;
 import org.example.testassignmentcs.dto.UserCreateRequestDto;
 import org.example.testassignmentcs.dto.UserDto;
 import org.example.testassignmentcs.dto.WrapperDto;
@@ -20,19 +42,38 @@ import org.example.testassignmentcs.exception.EntityNotFoundException;
 import org.example.testassignmentcs.exception.RegistrationException;
 import org.example.testassignmentcs.mapper.UserMapper;
 import org.example.testassignmentcs.model.User;
+import org.example.testassignmentcs.repository.UserJdbcRepository;
 import org.example.testassignmentcs.repository.UserRepository;
+import org.example.testassignmentcs.repository.UserShards;
+import org.example.testassignmentcs.service.BirthDateHistogram;
+import org.example.testassignmentcs.service.BirthDateIndex;
+import org.example.testassignmentcs.service.EmailBloomFilter;
+import org.example.testassignmentcs.service.PatchWriteBehindQueue;
 import org.example.testassignmentcs.service.Patcher;
+import org.example.testassignmentcs.service.Result;
+import org.example.testassignmentcs.service.UserCache;
+import org.example.testassignmentcs.service.UserCursor;
+import org.example.testassignmentcs.service.UserDataVersion;
+import org.example.testassignmentcs.service.UserIdAllocator;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @ExtendWith(MockitoExtension.class)
 class UserServiceImplTest {
     private static final int ADULT_AGE = 18;
+    private static final int BATCH_SIZE = 2;
+    private static final int EXPORT_FETCH_SIZE = 100;
     private static final String EMAIL_EXCEPTION_MESSAGE
             = "This email is already registered";
 
@@ -43,16 +84,52 @@ class UserServiceImplTest {
             = "'from' date should be before 'to' date";
 
     private final UserRepository userRepository = Mockito.mock(UserRepository.class);
+    private final UserJdbcRepository userJdbcRepository
+            = Mockito.mock(UserJdbcRepository.class);
     private final UserMapper userMapper = Mockito.mock(UserMapper.class);
     private final Patcher patcher = Mockito.mock(Patcher.class);
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+    private final EmailBloomFilter emailFilter = Mockito.mock(EmailBloomFilter.class);
+    private final UserCache userCache = Mockito.mock(UserCache.class);
+    private final PatchWriteBehindQueue patchQueue = Mockito.mock(PatchWriteBehindQueue.class);
+    private final BirthDateIndex birthDateIndex = Mockito.mock(BirthDateIndex.class);
+    private final BirthDateHistogram birthDateHistogram = Mockito.mock(BirthDateHistogram.class);
+    private final UserIdAllocator userIdAllocator = Mockito.mock(UserIdAllocator.class);
+    private final TransactionTemplate transactionTemplate
+            = new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class));
+    private final UserShards userShards = new UserShards(
+            List.of(), 1, Mockito.mock(PlatformTransactionManager.class), null);
 
     private final UserServiceImpl userService = new UserServiceImpl(
             ADULT_AGE,
+            BATCH_SIZE,
+            EXPORT_FETCH_SIZE,
+            false,
             userRepository,
+            userJdbcRepository,
             userMapper,
-            patcher
+            patcher,
+            validator,
+            emailFilter,
+            userCache,
+            patchQueue,
+            birthDateIndex,
+            birthDateHistogram,
+            userIdAllocator,
+            new UserDataVersion(),
+            userShards,
+            transactionTemplate
     );
 
+    @BeforeEach
+    void setUp() {
+        // the queue's guards are exercised in PatchWriteBehindQueueTest
+        lenient().when(patchQueue.writeThrough(any(), any())).thenAnswer(
+                invocation -> invocation.<Supplier<?>>getArgument(1).get());
+        lenient().when(patchQueue.overwrite(any(), any())).thenAnswer(
+                invocation -> invocation.<Supplier<?>>getArgument(1).get());
+    }
+
     @Test
     @DisplayName("Verify save() method works")
     void save_ValidUserCreateRequestDto_ReturnsLong() {
@@ -75,14 +152,16 @@ class UserServiceImplTest {
                 .setPhoneNumber(requestDto.getPhoneNumber());
 
         when(userMapper.toModel(requestDto)).thenReturn(user);
-        when(userRepository.save(user)).thenReturn(user);
+        when(userIdAllocator.next(0, 1)).thenReturn(List.of(id));
 
         Long expect = user.getId();
 
         Long result = userService.save(requestDto);
         assertNotNull(result);
         assertEquals(expect, result);
-        verify(userRepository, times(1)).save(user);
+        verify(userJdbcRepository, times(1)).insertAll(List.of(user));
+        verify(userRepository, never()).findByEmail(any());
+        verify(emailFilter, times(1)).put(requestDto.getEmail());
     }
 
     @Test
@@ -91,6 +170,7 @@ class UserServiceImplTest {
         UserCreateRequestDto requestDto = new UserCreateRequestDto()
                 .setEmail("user1@example.com");
 
+        when(emailFilter.mightContain(requestDto.getEmail())).thenReturn(true);
         when(userRepository.findByEmail(requestDto.getEmail()))
                 .thenReturn(Optional.of(new User()));
 
@@ -99,6 +179,64 @@ class UserServiceImplTest {
         assertEquals(EMAIL_EXCEPTION_MESSAGE, exception.getMessage());
     }
 
+    @Test
+    @DisplayName("trySave() returns an already registered email as a stackless failure")
+    void trySave_UserCreateDtoWithExistingEmail_ReturnsFailure() {
+        UserCreateRequestDto requestDto = new UserCreateRequestDto()
+                .setEmail("user1@example.com");
+
+        when(emailFilter.mightContain(requestDto.getEmail())).thenReturn(true);
+        when(userRepository.findByEmail(requestDto.getEmail()))
+                .thenReturn(Optional.of(new User()));
+
+        Result<Long> result = userService.trySave(requestDto);
+        assertFalse(result.isSuccess());
+        assertInstanceOf(RegistrationException.class, result.error());
+        assertEquals(EMAIL_EXCEPTION_MESSAGE, result.error().getMessage());
+        assertEquals(0, result.error().getStackTrace().length);
+        verify(userJdbcRepository, never()).insertAll(any());
+    }
+
+    @Test
+    @DisplayName("save() method in insert-first mode turns the unique email violation "
+            + "into RegistrationException")
+    void save_InsertFirstWithExistingEmail_ReturnsException() {
+        UserServiceImpl insertFirstUserService = new UserServiceImpl(
+                ADULT_AGE,
+                BATCH_SIZE,
+                EXPORT_FETCH_SIZE,
+                true,
+                userRepository,
+                userJdbcRepository,
+                userMapper,
+                patcher,
+                validator,
+                emailFilter,
+                userCache,
+                patchQueue,
+                birthDateIndex,
+                birthDateHistogram,
+                userIdAllocator,
+                new UserDataVersion(),
+                userShards,
+                transactionTemplate
+        );
+        UserCreateRequestDto requestDto = new UserCreateRequestDto()
+                .setEmail("user1@example.com")
+                .setBirthDate(LocalDate.of(1990, 1, 1));
+        User user = new User().setEmail(requestDto.getEmail());
+
+        when(userMapper.toModel(requestDto)).thenReturn(user);
+        when(userIdAllocator.next(0, 1)).thenReturn(List.of(1L));
+        when(userJdbcRepository.insertAll(List.of(user))).thenThrow(emailViolation());
+
+        RegistrationException exception = assertThrows(RegistrationException.class,
+                () -> insertFirstUserService.save(requestDto));
+        assertEquals(EMAIL_EXCEPTION_MESSAGE, exception.getMessage());
+        verify(userRepository, never()).findByEmail(any());
+        verify(emailFilter, never()).mightContain(any());
+    }
+
     @Test
     @DisplayName("save() method don`t work(age is less then 18)")
     void save_UserCreateDtoWithInvalidAge_ReturnsException() {
@@ -109,6 +247,117 @@ class UserServiceImplTest {
         assertEquals(AGE_EXCEPTION_MESSAGE + ADULT_AGE, exception.getMessage());
     }
 
+    @Test
+    @DisplayName("Verify saveAll() method inserts valid rows and rejects the rest")
+    void saveAll_MixedRequestDtos_ReturnsResultPerRow() {
+        UserCreateRequestDto valid = new UserCreateRequestDto()
+                .setEmail("john@example.com")
+                .setFirstName("John")
+                .setLastName("Smith")
+                .setBirthDate(LocalDate.of(1990, 1, 1));
+        UserCreateRequestDto registered = new UserCreateRequestDto()
+                .setEmail("david@example.com")
+                .setFirstName("David")
+                .setLastName("Davis")
+                .setBirthDate(LocalDate.of(1990, 1, 1));
+        UserCreateRequestDto duplicate = new UserCreateRequestDto()
+                .setEmail("john@example.com")
+                .setFirstName("Johnny")
+                .setLastName("Smith")
+                .setBirthDate(LocalDate.of(1991, 1, 1));
+        UserCreateRequestDto invalid = new UserCreateRequestDto()
+                .setEmail("not-an-email")
+                .setFirstName("Kid")
+                .setLastName("Young")
+                .setBirthDate(LocalDate.of(2015, 1, 1));
+        User user = new User().setEmail(valid.getEmail());
+
+        when(emailFilter.mightContain(registered.getEmail())).thenReturn(true);
+        when(userJdbcRepository.findRegisteredEmails(List.of(registered.getEmail())))
+                .thenReturn(Set.of(registered.getEmail()));
+        when(userMapper.toModel(valid)).thenReturn(user);
+        when(userIdAllocator.next(anyInt(), anyInt())).thenAnswer(invocation -> LongStream
+                .rangeClosed(1, invocation.<Integer>getArgument(1))
+                .boxed()
+                .toList());
+
+        BatchResultDto result = userService.saveAll(
+                List.of(valid, duplicate, registered, invalid).iterator());
+
+        assertEquals(1, result.getCreated());
+        assertEquals(3, result.getRejected());
+        List<BatchItemResultDto> items = result.getResults();
+        assertEquals(BatchItemResultDto.Status.CREATED, items.get(0).getStatus());
+        assertEquals(1L, items.get(0).getId());
+        assertEquals(List.of(EMAIL_EXCEPTION_MESSAGE), items.get(1).getErrors());
+        assertEquals(List.of(EMAIL_EXCEPTION_MESSAGE), items.get(2).getErrors());
+        assertEquals(BatchItemResultDto.Status.REJECTED, items.get(3).getStatus());
+        assertEquals(3, items.get(3).getIndex());
+        assertEquals(2, items.get(3).getErrors().size());
+        verify(userJdbcRepository, times(1)).insertAll(any());
+    }
+
+    @Test
+    @DisplayName("Verify saveAll() method rejects only the rows whose email was registered "
+            + "concurrently")
+    void saveAll_EmailRegisteredConcurrently_RejectsOnlyThatRow() {
+        UserCreateRequestDto john = new UserCreateRequestDto()
+                .setEmail("john@example.com")
+                .setFirstName("John")
+                .setLastName("Smith")
+                .setBirthDate(LocalDate.of(1990, 1, 1));
+        UserCreateRequestDto david = new UserCreateRequestDto()
+                .setEmail("david@example.com")
+                .setFirstName("David")
+                .setLastName("Davis")
+                .setBirthDate(LocalDate.of(1990, 1, 1));
+        User johnUser = new User().setEmail(john.getEmail());
+        User davidUser = new User().setEmail(david.getEmail());
+
+        when(userMapper.toModel(john)).thenReturn(johnUser);
+        when(userMapper.toModel(david)).thenReturn(davidUser);
+        when(userIdAllocator.next(0, 2)).thenReturn(List.of(1L, 2L));
+        when(userJdbcRepository.insertAll(List.of(johnUser, davidUser)))
+                .thenThrow(emailViolation());
+        when(userJdbcRepository.insertAll(List.of(davidUser))).thenThrow(emailViolation());
+
+        BatchResultDto result = userService.saveAll(List.of(john, david).iterator());
+
+        assertEquals(1, result.getCreated());
+        assertEquals(1, result.getRejected());
+        assertEquals(1L, result.getResults().get(0).getId());
+        assertEquals(List.of(EMAIL_EXCEPTION_MESSAGE), result.getResults().get(1).getErrors());
+        assertNull(result.getResults().get(1).getId());
+        verify(userJdbcRepository, times(1)).insertAll(List.of(johnUser));
+        verify(birthDateIndex, times(1)).add(List.of(johnUser));
+    }
+
+    @Test
+    @DisplayName("Verify findById() method returns the cached user")
+    void findById_ExistingId_ReturnsUserDto() {
+        UserDto userDto = new UserDto().setId(1L);
+
+        when(userCache.get(1L)).thenReturn(userDto);
+
+        assertEquals(userDto, userService.findById(1L));
+        verify(userRepository, never()).findById(any());
+    }
+
+    @Test
+    @DisplayName("findById() method don`t work(non-existing id)")
+    void findById_InValidId_ReturnsException() {
+        assertThrows(EntityNotFoundException.class, () -> userService.findById(1L));
+    }
+
+    @Test
+    @DisplayName("tryFindById() returns a missing user as a failure instead of throwing")
+    void tryFindById_InValidId_ReturnsFailure() {
+        Result<UserDto> result = userService.tryFindById(1L);
+
+        assertFalse(result.isSuccess());
+        assertInstanceOf(EntityNotFoundException.class, result.error());
+    }
+
     @Test
     @DisplayName("Verify patchUpdate() method works")
     void patchUpdate_ValidUserIdAndValidUserDto_Ok() {
@@ -117,51 +366,87 @@ class UserServiceImplTest {
                 .setId(id)
                 .setEmail("user1@example.com")
                 .setFirstName("John")
-                .setEmail("Smith")
+                .setLastName("Smith")
                 .setBirthDate(LocalDate.of(1990, 1, 1));
 
-        when(userRepository.findById(id)).thenReturn(Optional.of(userFromDb));
-
-        UserDto existUserDto = new UserDto()
-                .setId(userFromDb.getId())
-                .setEmail(userFromDb.getEmail())
-                .setFirstName(userFromDb.getFirstName())
-                .setLastName(userFromDb.getLastName())
-                .setBirthDate(userFromDb.getBirthDate());
-
-        when(userMapper.toDto(userFromDb)).thenReturn(existUserDto);
+        when(userRepository.findForUpdateById(id)).thenReturn(Optional.of(userFromDb));
 
         UserDto userDto = new UserDto()
-                .setId(existUserDto.getId())
-                .setEmail(existUserDto.getEmail())
+                .setId(id)
                 .setFirstName("David")
-                .setLastName("Davis")
-                .setBirthDate(existUserDto.getBirthDate());
-
-        existUserDto.setFirstName(userDto.getFirstName());
-        existUserDto.setLastName(userDto.getLastName());
-
+                .setLastName("Davis");
         User userPatch = new User()
-                .setId(userFromDb.getId())
-                .setLastName(existUserDto.getFirstName())
-                .setLastName(existUserDto.getLastName())
-                .setBirthDate(existUserDto.getBirthDate());
+                .setId(id)
+                .setFirstName(userDto.getFirstName())
+                .setLastName(userDto.getLastName());
 
-        when(userMapper.toModelFromUserDto(existUserDto)).thenReturn(userPatch);
-        when(userRepository.save(userPatch)).thenReturn(userPatch);
+        when(userMapper.toModelFromUserDto(userDto)).thenReturn(userPatch);
+        when(patcher.internPatcher(userFromDb, userPatch))
+                .thenReturn(List.of("firstName", "lastName"));
 
         assertDoesNotThrow(() -> userService.patchUpdate(id, userDto));
-        verify(userRepository, times(1)).findById(id);
-        verify(userMapper, times(1)).toDto(userFromDb);
-        verify(userMapper, times(1)).toModelFromUserDto(userDto);
-        verify(userRepository, times(1)).save(userPatch);
+        assertNull(userPatch.getId());
+        verify(userRepository, times(1)).findForUpdateById(id);
+        verify(userRepository, times(1)).saveAndFlush(userFromDb);
+        verify(userRepository, never()).save(any());
+        verify(emailFilter, never()).put(any());
+        verify(userCache, times(1)).invalidate(id);
+    }
+
+    @Test
+    @DisplayName("Verify patchUpdate() method skips the write when nothing changed")
+    void patchUpdate_UnchangedFields_NoUpdate() {
+        Long id = 1L;
+        User userFromDb = new User().setId(id);
+        UserDto userDto = new UserDto();
+        User userPatch = new User();
+
+        when(userRepository.findForUpdateById(id)).thenReturn(Optional.of(userFromDb));
+        when(userMapper.toModelFromUserDto(userDto)).thenReturn(userPatch);
+        when(patcher.internPatcher(userFromDb, userPatch)).thenReturn(List.of());
+
+        userService.patchUpdate(id, userDto);
+
+        verify(userRepository, never()).saveAndFlush(any());
+        verify(userCache, never()).invalidate(any());
+    }
+
+    @Test
+    @DisplayName("Verify patchUpdate() method hands the patch to the write-behind queue")
+    void patchUpdate_QueueAccepts_NoSynchronousWrite() {
+        UserDto userDto = new UserDto().setEmail("david@example.com");
+        User userPatch = new User().setEmail(userDto.getEmail());
+
+        when(userMapper.toModelFromUserDto(userDto)).thenReturn(userPatch);
+        when(patchQueue.offer(1L, userPatch)).thenReturn(true);
+
+        userService.patchUpdate(1L, userDto);
+
+        verify(emailFilter, times(1)).put(userDto.getEmail());
+        verify(userRepository, never()).findForUpdateById(any());
+        verify(userRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    @DisplayName("patchUpdate() method don`t work(age is less then 18)")
+    void patchUpdate_InvalidAge_ReturnsException() {
+        UserDto userDto = new UserDto().setBirthDate(LocalDate.of(2015, 1, 1));
+
+        RegistrationException exception = assertThrows(RegistrationException.class,
+                () -> userService.patchUpdate(1L, userDto));
+        assertEquals(AGE_EXCEPTION_MESSAGE + ADULT_AGE, exception.getMessage());
+        verify(userRepository, never()).findForUpdateById(any());
     }
 
     @Test
     @DisplayName("patchUpdate() method donn`t work(non-existing id)")
     void patchUpdate_InValidId_ReturnsException() {
+        UserDto userDto = new UserDto();
+
+        when(userMapper.toModelFromUserDto(userDto)).thenReturn(new User());
+
         assertThrows(EntityNotFoundException.class,
-                () -> userService.patchUpdate(anyLong(), new UserDto()));
+                () -> userService.patchUpdate(1L, userDto));
     }
 
     @Test
@@ -174,18 +459,106 @@ class UserServiceImplTest {
                 .setLastName("Smith")
                 .setBirthDate(LocalDate.of(1990, 1, 1));
 
-        when(userRepository.existsById(id)).thenReturn(true);
-        when(userMapper.toModel(requestDto)).thenReturn(new User());
+        LocalDate oldBirthDate = LocalDate.of(1989, 1, 1);
+        User user = new User().setBirthDate(requestDto.getBirthDate());
+
+        when(userMapper.toModel(requestDto)).thenReturn(user);
+        when(userJdbcRepository.updateReturningOldBirthDate(user)).thenReturn(oldBirthDate);
 
         assertDoesNotThrow(() -> userService.putUpdate(id, requestDto));
-        verify(userRepository, times(1)).save(any());
+        assertEquals(id, user.getId());
+        verify(userRepository, never()).existsById(any());
+        verify(userRepository, never()).save(any());
+        verify(userJdbcRepository, never()).findBirthDatesForUpdate(any());
+        verify(birthDateHistogram, times(1)).move(oldBirthDate, requestDto.getBirthDate());
+        verify(birthDateIndex, times(1)).put(id, requestDto.getBirthDate());
+        verify(userCache, times(1)).invalidate(id);
+    }
+
+    @Test
+    @DisplayName("Verify putUpdate() method moves the user in the histogram when the birth date "
+            + "changes")
+    void putUpdate_ChangedBirthDate_MovesUser() {
+        Long id = 1L;
+        LocalDate oldBirthDate = LocalDate.of(1990, 1, 1);
+        UserCreateRequestDto requestDto = new UserCreateRequestDto()
+                .setEmail("user1@example.com")
+                .setBirthDate(LocalDate.of(1991, 1, 1));
+        User user = new User().setBirthDate(requestDto.getBirthDate());
+
+        when(userMapper.toModel(requestDto)).thenReturn(user);
+        when(userJdbcRepository.updateReturningOldBirthDate(user)).thenReturn(oldBirthDate);
+
+        userService.putUpdate(id, requestDto);
+
+        verify(birthDateHistogram, times(1)).move(oldBirthDate, requestDto.getBirthDate());
+        verify(birthDateIndex, times(1)).put(id, requestDto.getBirthDate());
+        verify(userCache, times(1)).invalidate(id);
     }
 
     @Test
     @DisplayName("putUpdate() method donn`t work(non-existing id)")
     void putUpdate_InValidId_ReturnsException() {
+        UserCreateRequestDto requestDto = new UserCreateRequestDto()
+                .setBirthDate(LocalDate.of(1990, 1, 1));
+
+        when(userMapper.toModel(requestDto)).thenReturn(new User());
+
         assertThrows(EntityNotFoundException.class,
-                () -> userService.putUpdate(anyLong(), new UserCreateRequestDto()));
+                () -> userService.putUpdate(1L, requestDto));
+        verify(userCache, never()).invalidate(any());
+    }
+
+    @Test
+    @DisplayName("Verify deleteById() method evicts the cached user")
+    void deleteById_ValidId_InvalidatesCache() {
+        LocalDate birthDate = LocalDate.of(1990, 1, 1);
+        when(userJdbcRepository.findBirthDatesForUpdate(List.of(1L)))
+                .thenReturn(Map.of(1L, birthDate));
+
+        userService.deleteById(1L);
+
+        verify(userJdbcRepository, times(1)).deleteAllById(Set.of(1L));
+        verify(birthDateHistogram, times(1)).remove(birthDate);
+        verify(userCache, times(1)).invalidate(1L);
+    }
+
+    @Test
+    @DisplayName("Verify deleteAllById() method deletes ids in chunks")
+    void deleteAllById_ThreeIds_DeletesInTwoChunks() {
+        LocalDate birthDate = LocalDate.of(1990, 1, 1);
+        when(userJdbcRepository.findBirthDatesForUpdate(List.of(1L, 2L)))
+                .thenReturn(Map.of(1L, birthDate, 2L, birthDate));
+
+        BatchDeleteResultDto result = userService.deleteAllById(List.of(1L, 2L, 3L));
+
+        assertEquals(2, result.getDeleted());
+        assertEquals(List.of(2, 0), result.getChunks());
+        verify(userCache, times(3)).invalidate(anyLong());
+        verify(birthDateHistogram, times(2)).remove(birthDate);
+        verify(userRepository, never()).deleteById(any());
+    }
+
+    @Test
+    @DisplayName("Verify deleteAllUsersAgeBetween() method deletes until the range is empty")
+    void deleteAllUsersAgeBetween_ValidDates_DeletesInChunks() {
+        LocalDate fromDate = LocalDate.of(1990, 1, 1);
+        LocalDate toDate = LocalDate.of(1999, 1, 1);
+
+        when(userJdbcRepository.findIdsByBirthDateBetween(fromDate, toDate, BATCH_SIZE))
+                .thenReturn(List.of(1L, 2L))
+                .thenReturn(List.of(3L));
+        when(userJdbcRepository.findBirthDatesForUpdate(List.of(1L, 2L)))
+                .thenReturn(Map.of(1L, fromDate, 2L, fromDate));
+        when(userJdbcRepository.findBirthDatesForUpdate(List.of(3L)))
+                .thenReturn(Map.of(3L, toDate));
+
+        BatchDeleteResultDto result = userService.deleteAllUsersAgeBetween(fromDate, toDate);
+
+        assertEquals(3, result.getDeleted());
+        assertEquals(List.of(2, 1), result.getChunks());
+        verify(userJdbcRepository, times(2))
+                .findIdsByBirthDateBetween(fromDate, toDate, BATCH_SIZE);
     }
 
     @Test
@@ -253,6 +626,147 @@ class UserServiceImplTest {
         );
     }
 
+    @Test
+    @DisplayName("Verify findAllUsersAgeBetween() method works with a cursor")
+    void findAllUsersAgeBetween_Cursor_ReturnsNextCursor() {
+        LocalDate fromDate = LocalDate.of(1990, 1, 1);
+        LocalDate toDate = LocalDate.of(2000, 1, 1);
+        User john = new User()
+                .setId(1L)
+                .setBirthDate(LocalDate.of(1991, 1, 1));
+        User david = new User()
+                .setId(2L)
+                .setBirthDate(LocalDate.of(1992, 1, 1));
+        User kate = new User()
+                .setId(3L)
+                .setBirthDate(LocalDate.of(1993, 1, 1));
+
+        when(userRepository.findAllByBirthDateBetweenOrderByBirthDateAscIdAsc(
+                fromDate, toDate, PageRequest.of(0, 3)))
+                .thenReturn(List.of(john, david, kate));
+        when(userRepository.findAllByBirthDateBetweenAfter(
+                fromDate, toDate, david.getBirthDate(), david.getId(), PageRequest.of(0, 3)))
+                .thenReturn(List.of(kate));
+        when(userMapper.toDto(any(User.class))).thenAnswer(invocationOnMock -> {
+            User user = invocationOnMock.getArgument(0);
+            return new UserDto().setId(user.getId()).setBirthDate(user.getBirthDate());
+        });
+
+        WrapperDto<UserDto> firstPage = userService.findAllUsersAgeBetween(fromDate, toDate, "", 2);
+        assertEquals(2, firstPage.getData().size());
+        assertEquals(new UserCursor(david.getBirthDate(), david.getId()).encode(),
+                firstPage.getNextCursor());
+
+        WrapperDto<UserDto> lastPage = userService.findAllUsersAgeBetween(
+                fromDate, toDate, firstPage.getNextCursor(), 2);
+        assertEquals(List.of(new UserDto().setId(3L).setBirthDate(kate.getBirthDate())),
+                lastPage.getData());
+        assertNull(lastPage.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("Verify findAllUsersAgeBetween() method reads ids from the ready birth date index")
+    void findAllUsersAgeBetween_IndexReady_SkipsRangeQuery() {
+        LocalDate fromDate = LocalDate.of(1990, 1, 1);
+        LocalDate toDate = LocalDate.of(2000, 1, 1);
+        UserDto john = new UserDto().setId(1L).setBirthDate(LocalDate.of(1991, 1, 1));
+        UserDto david = new UserDto().setId(2L).setBirthDate(LocalDate.of(1992, 1, 1));
+
+        when(birthDateIndex.isReady()).thenReturn(true);
+        when(birthDateIndex.findIds(fromDate, toDate, 0, 3)).thenReturn(List.of(2L, 1L, 3L));
+        when(userCache.getAll(List.of(2L, 1L, 3L))).thenReturn(Map.of(1L, john, 2L, david));
+
+        WrapperDto<UserDto> page = userService.findAllUsersAgeBetween(
+                fromDate, toDate, PageRequest.of(0, 3));
+        assertEquals(List.of(david, john), page.getData());
+        verify(userRepository, never()).findAllByBirthDateBetween(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Verify findAllUsersAgeBetween() method returns only the requested fields")
+    void findAllUsersAgeBetween_Fields_ReturnsProjectedRows() {
+        LocalDate fromDate = LocalDate.of(1990, 1, 1);
+        LocalDate toDate = LocalDate.of(2000, 1, 1);
+        Pageable pageable = PageRequest.of(0, 2);
+        Tuple john = tuple(Map.of("id", 1L, "email", "john@example.com"));
+
+        when(userRepository.findAllByBirthDateBetween(
+                fromDate, toDate, List.of("id", "email"), pageable))
+                .thenReturn(List.of(john));
+
+        WrapperDto<Map<String, Object>> page = userService.findAllUsersAgeBetween(
+                fromDate, toDate, List.of("id", "email", "id"), pageable);
+        assertEquals(List.of(Map.of("id", 1L, "email", "john@example.com")), page.getData());
+        verify(userMapper, never()).toDto(any());
+    }
+
+    @Test
+    @DisplayName("Verify projected cursor pages read the cursor keys without returning them")
+    void findAllUsersAgeBetween_FieldsAndCursor_ReturnsNextCursor() {
+        LocalDate fromDate = LocalDate.of(1990, 1, 1);
+        LocalDate toDate = LocalDate.of(2000, 1, 1);
+        LocalDate birthDate = LocalDate.of(1991, 1, 1);
+        Tuple john = tuple(Map.of("email", "john@example.com", "id", 1L,
+                "birthDate", birthDate));
+        Tuple david = tuple(Map.of("email", "david@example.com", "id", 2L,
+                "birthDate", birthDate));
+
+        when(userRepository.findAllByBirthDateBetweenAfter(
+                fromDate, toDate, null, null, List.of("email", "id", "birthDate"), 2))
+                .thenReturn(List.of(john, david));
+
+        WrapperDto<Map<String, Object>> page = userService.findAllUsersAgeBetween(
+                fromDate, toDate, List.of("email"), "", 1);
+        assertEquals(List.of(Map.of("email", "john@example.com")), page.getData());
+        assertEquals(new UserCursor(birthDate, 1L).encode(), page.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("findAllUsersAgeBetween() method don`t work(unknown field)")
+    void findAllUsersAgeBetween_UnknownField_ReturnsException() {
+        LocalDate date = LocalDate.of(1990, 1, 1);
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> userService.findAllUsersAgeBetween(
+                        date, date, List.of("password"), PageRequest.of(0, 2)));
+        assertEquals("Unknown field: password", exception.getMessage());
+    }
+
+    @Test
+    @DisplayName("Verify findBirthYearStats() method reads the histogram")
+    void findBirthYearStats_Histogram_ReturnsStats() {
+        when(birthDateHistogram.birthYears()).thenReturn(new TreeMap<>(Map.of(1990, 2L, 1991, 1L)));
+        when(birthDateHistogram.ageBuckets(any(), eq(ADULT_AGE)))
+                .thenReturn(Map.of("28-37", 3L));
+
+        BirthYearStatsDto stats = userService.findBirthYearStats();
+
+        assertEquals(3, stats.getTotal());
+        assertEquals(Map.of(1990, 2L, 1991, 1L), stats.getBirthYears());
+        assertEquals(Map.of("28-37", 3L), stats.getAgeBuckets());
+    }
+
+    @Test
+    @DisplayName("Verify exportUsersAgeBetween() method passes every mapped user to the consumer")
+    void exportUsersAgeBetween_ValidDates_ConsumesEveryUser() {
+        LocalDate fromDate = LocalDate.of(1990, 1, 1);
+        LocalDate toDate = LocalDate.of(2000, 1, 1);
+        User john = new User().setId(1L);
+        User david = new User().setId(2L);
+
+        when(userRepository.streamAllByBirthDateBetween(fromDate, toDate, EXPORT_FETCH_SIZE))
+                .thenReturn(Stream.of(john, david));
+        when(userMapper.toDto(any(User.class))).thenAnswer(invocationOnMock -> {
+            User user = invocationOnMock.getArgument(0);
+            return new UserDto().setId(user.getId());
+        });
+
+        List<UserDto> exported = new ArrayList<>();
+        userService.exportUsersAgeBetween(fromDate, toDate, exported::add);
+
+        assertEquals(List.of(new UserDto().setId(1L), new UserDto().setId(2L)), exported);
+    }
+
     @Test
     @DisplayName("findAllUsersAgeBetween() method donn`t work('from' is less than 'to')")
     void findAllUsersAgeBetween_InValidDateFrom_ReturnsException() {
@@ -266,4 +780,22 @@ class UserServiceImplTest {
                         toDate,
                         PageRequest.of(0, 10)));
     }
+
+    private static DataIntegrityViolationException emailViolation() {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("could not execute statement",
+                        new SQLException("Unique index or primary key violation: "
+                                + "\"PUBLIC.UK_USERS_EMAIL_INDEX_4 ON PUBLIC.USERS(EMAIL)\""),
+                        "PUBLIC.UK_USERS_EMAIL_INDEX_4"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Tuple tuple(Map<String, Object> values) {
+        Tuple tuple = Mockito.mock(Tuple.class,
+                Mockito.withSettings().strictness(Strictness.LENIENT));
+        values.forEach((field, value) -> when(tuple.get(field)).thenReturn(value));
+        values.forEach((field, value) -> when(tuple.get(field, (Class<Object>) value.getClass()))
+                .thenReturn(value));
+        return tuple;
+    }
 }